@@ -24,10 +24,12 @@ ArrayList<BranchRef> branches; // all branches which this commit belongs to
 ArrayList<BranchRef> heads; // all branches which this commit is HEAD of
 int inDegree; // number of parents in the meta-graph
 int outDegree; // number of children in the meta-graph
-ArrayList<Integer> edges; // metagraph's edges touching the commit
+SortedIntSet edges; // IDs of the metagraph's edges touching the commit
 int layer; // layer in a metagraph's dag which the commit belongs to
 int mFiles; // number of files modified by this commit (0 if not sequential)
 int mLines; // number of lines changed (added + deleted) by this commit (0 if not sequential)
+CommitTable table; // pre-parsed metadata of this commit, if any
+int row; // row of this commit in table
 
 Commit() {}
 
@@ -44,12 +46,14 @@ Commit(RevCommit c) {
   id = c.copy();
   branches = new ArrayList<BranchRef>();
   heads = null;
-  edges = new ArrayList<Integer>();
+  edges = new SortedIntSet();
   inDegree = 0;
   outDegree = 0;
   layer = -1;
   mFiles = 0;
   mLines = 0;
+  table = null;
+  row = -1;
 }
 
 
@@ -58,12 +62,25 @@ Commit(Commit c) {
   data = c.data;
   branches = c.branches;
   heads = c.heads;
-  edges = new ArrayList<Integer>();
+  edges = new SortedIntSet();
   inDegree = 0;
   outDegree = 0;
   layer = -1;
   mFiles = c.mFiles;
   mLines = c.mLines;
+  table = c.table;
+  row = c.row;
+}
+
+
+/**
+ * @return The position of c in the given (sorted) list of commits. That is the row of c in its
+ *         commit table whenever the list is the one the table was built on, otherwise it is found
+ *         by binary search.
+ */
+static int indexOf(ArrayList<Commit> commits, Commit c) {
+  if (c.row >= 0 && c.row < commits.size() && commits.get(c.row) == c) return c.row;
+  return Collections.binarySearch(commits, c);
 }
 
 
@@ -127,9 +144,44 @@ PersonIdent getCommittingInfo() {
 }
 
 
+// the getters below read the commit table, when available, and parse the raw buffer otherwise
+
+
+long getCommitTime() {
+  if (table != null) return table.commitTime[row];
+  return getCommittingInfo().getWhen().getTime();
+}
+
+
+long getAuthorTime() {
+  if (table != null) return table.authorTime[row];
+  return getAuthoringInfo().getWhen().getTime();
+}
+
+
+/**
+ * @return The index of the author in the GitMiner's allAuthors, or -1 if there is no commit table.
+ */
+int getAuthorId() {
+  return table != null ? table.authorId[row] : -1;
+}
+
+
+Person getAuthor() {
+  Person res = table != null ? table.getAuthor(row) : null;
+  return res != null ? res : new Person(getAuthoringInfo());
+}
+
+
+Person getCommitter() {
+  if (table != null) return table.getCommitter(row);
+  return new Person(getCommittingInfo());
+}
+
+
 String getMessage() {
   return RawParseUtils.decode(RawParseUtils.parseEncoding(data), data,
-      RawParseUtils.commitMessage(data, 0), data.length);
+      table != null ? table.messageStart[row] : RawParseUtils.commitMessage(data, 0), data.length);
 }
 
 
@@ -138,8 +190,15 @@ ObjectId getTreeId() {
 }
 
 
+int getParentCount() {
+  if (table != null) return table.getParentCount(row);
+  return RevCommit.parse(data).getParentCount();
+}
+
+
 ObjectId[] getParents() {
-  ObjectId[] res;
+  ObjectId[] res = table != null ? table.getParents(row) : null;
+  if (res != null) return res;
   int i = 0;
   RevCommit[] ps = RevCommit.parse(data).getParents();
   res = new ObjectId[ps.length];
@@ -150,6 +209,11 @@ ObjectId[] getParents() {
 }
 
 
+byte[] getRawBuffer() {
+  return data;
+}
+
+
 @Override
 public String toString() {
   String out = "";
@@ -171,6 +235,8 @@ public void readExternal(ObjectInput in) throws IOException, ClassNotFoundExcept
     data[i] = in.readByte();
   }
   id  = (ObjectId)in.readObject();
+  table = null;
+  row = -1;
   mFiles = in.readInt();
   mLines = in.readInt();
   layer = in.readInt();
@@ -196,15 +262,17 @@ public void readExternal(ObjectInput in) throws IOException, ClassNotFoundExcept
     heads = null;
   }
   size = in.readInt();
-  edges = new ArrayList<Integer>(size);
+  edges = new SortedIntSet();
   for (i = 0; i < size; i++) {
     edges.add(in.readInt());
   }
+  edges.trimToSize();
 }
 
 
 @Override
 public void writeExternal(ObjectOutput out) throws IOException {
+  int i;
   out.writeInt(data.length);
   for (byte b : data) {
     out.write(b);
@@ -226,8 +294,8 @@ public void writeExternal(ObjectOutput out) throws IOException {
     }
   }
   out.writeInt(edges.size());
-  for (int me : edges) {
-    out.writeInt(me);
+  for (i = 0; i < edges.size(); i++) {
+    out.writeInt(edges.get(i));
   }
   out.flush();
 }
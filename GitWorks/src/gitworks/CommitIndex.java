@@ -0,0 +1,108 @@
+package gitworks;
+
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+
+
+/**
+ * Hash index of a set of commits, keyed on their SHA-1. Every commit gets a dense int id (0, 1, 2,
+ * ...) in insertion order; when built out of a sorted list, the id of a commit is its position in
+ * that list. The table uses open addressing with linear probing: slots hold the id + 1 of a commit
+ * (0 means empty) and the hash is taken straight from the bits of the SHA-1, so that neither
+ * inserting nor looking up a commit allocates or shifts anything.
+ */
+class CommitIndex {
+
+private Commit[] commits; // the indexed commits, by id
+private int[] table; // id + 1 of the commit in each slot, 0 for an empty slot
+private int mask;
+private int size;
+
+
+CommitIndex(int capacity) {
+  int slots = 16;
+  while (slots < 2 * capacity && slots < (1 << 30))
+    slots <<= 1;
+  table = new int[slots];
+  mask = slots - 1;
+  commits = new Commit[Math.max(capacity, 16)];
+  size = 0;
+}
+
+
+/**
+ * It indexes all the given commits, so that the id of each commit is its position in the list.
+ * The list is supposed not to contain duplicates.
+ */
+CommitIndex(List<Commit> all) {
+  this(all.size());
+  for (Commit c : all)
+    add(c);
+}
+
+
+// the SHA-1 bits are uniformly distributed already: AnyObjectId.hashCode() is one of its words
+private int slotOf(AnyObjectId id) {
+  int i = id.hashCode() & mask;
+  int t;
+  while ((t = table[i]) != 0 && !AnyObjectId.equals(commits[t - 1].id, id))
+    i = (i + 1) & mask;
+  return i;
+}
+
+
+private void grow() {
+  int[] old = table;
+  table = new int[old.length << 1];
+  mask = table.length - 1;
+  for (int t : old)
+    if (t != 0) table[slotOf(commits[t - 1].id)] = t;
+}
+
+
+/**
+ * It adds a commit to the index, unless a commit with the same SHA-1 is there already.
+ *
+ * @return The id of the given commit, or the one of its equal already in the index.
+ */
+int add(Commit c) {
+  int i = slotOf(c.id);
+  if (table[i] != 0) return table[i] - 1;
+  if (size == commits.length) commits = Arrays.copyOf(commits, size << 1);
+  commits[size] = c;
+  table[i] = ++size;
+  if (2 * size > table.length) grow();
+  return size - 1;
+}
+
+
+/**
+ * @return The id of the commit with the given SHA-1, or -1 if it is not in the index.
+ */
+int indexOf(AnyObjectId id) {
+  return table[slotOf(id)] - 1;
+}
+
+
+/**
+ * @return The commit with the given SHA-1, or null if it is not in the index.
+ */
+Commit get(AnyObjectId id) {
+  int t = table[slotOf(id)];
+  return t == 0 ? null : commits[t - 1];
+}
+
+
+Commit get(int id) {
+  return commits[id];
+}
+
+
+int size() {
+  return size;
+}
+
+}
@@ -0,0 +1,122 @@
+package gitworks;
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.util.RawParseUtils;
+
+
+/**
+ * Columnar store of the metadata of all the commits of a GitMiner, parsed once out of their raw
+ * buffers. Rows are the ids of a {@link CommitIndex}, i.e. the positions in allCommits, and each
+ * indexed commit becomes a view over its row (see {@link Commit#table}).
+ */
+class CommitTable {
+
+private static final byte[] PARENT = Constants.encodeASCII("parent ");
+
+private CommitIndex index;
+private ArrayList<Person> authors;
+
+long[] commitTime; // committing timestamps (ms)
+long[] authorTime; // authoring timestamps (ms)
+int[] authorId; // index of the author in the authors list
+int[] committerId; // index of the committer in the committers list
+int[] parentStart; // parents of row i are in parents[parentStart[i] .. parentStart[i + 1] - 1]
+int[] parents; // rows of the parents (-1 if not in the index)
+int[] messageStart; // offset of the message in the raw buffer
+ArrayList<Person> committers;
+
+
+/**
+ * It parses all the commits of the index and makes them views over this table.
+ *
+ * @param index
+ * @param authors
+ *          All the authors of the indexed commits, sorted.
+ */
+CommitTable(CommitIndex index, ArrayList<Person> authors) {
+  int i, p, n = index.size();
+  byte[] raw;
+  Commit c;
+  PersonIdent pi;
+  Integer cId;
+  HashMap<String, Integer> cIds = new HashMap<String, Integer>();
+  this.index = index;
+  this.authors = authors;
+  commitTime = new long[n];
+  authorTime = new long[n];
+  authorId = new int[n];
+  committerId = new int[n];
+  parentStart = new int[n + 1];
+  messageStart = new int[n];
+  committers = new ArrayList<Person>();
+  int[] ps = new int[n + n / 2]; // most commits have a single parent
+  for (i = 0; i < n; i++) {
+    c = index.get(i);
+    raw = c.getRawBuffer();
+    p = parentStart[i];
+    for (int ptr = 46; (ptr = RawParseUtils.match(raw, ptr, PARENT)) >= 0; ptr += 41) {
+      if (p == ps.length) ps = Arrays.copyOf(ps, ps.length * 2);
+      ps[p++] = index.indexOf(ObjectId.fromString(raw, ptr));
+    }
+    parentStart[i + 1] = p;
+    pi = RawParseUtils.parsePersonIdent(raw, RawParseUtils.author(raw, 0));
+    authorTime[i] = pi.getWhen().getTime();
+    authorId[i] = Collections.binarySearch(authors, pi);
+    pi = RawParseUtils.parsePersonIdent(raw, RawParseUtils.committer(raw, 0));
+    commitTime[i] = pi.getWhen().getTime();
+    cId = cIds.get(pi.getEmailAddress());
+    if (cId == null) {
+      cId = committers.size();
+      committers.add(new Person(pi));
+      cIds.put(pi.getEmailAddress(), cId);
+    }
+    committerId[i] = cId;
+    messageStart[i] = RawParseUtils.commitMessage(raw, 0);
+    c.table = this;
+    c.row = i;
+  }
+  parents = Arrays.copyOf(ps, parentStart[n]);
+}
+
+
+int size() {
+  return commitTime.length;
+}
+
+
+int getParentCount(int row) {
+  return parentStart[row + 1] - parentStart[row];
+}
+
+
+/**
+ * @return The ids of the parents of the given row, or null if any of them is not in the index.
+ */
+ObjectId[] getParents(int row) {
+  ObjectId[] res = new ObjectId[getParentCount(row)];
+  for (int i = 0; i < res.length; i++) {
+    if (parents[parentStart[row] + i] < 0) return null;
+    res[i] = index.get(parents[parentStart[row] + i]).id;
+  }
+  return res;
+}
+
+
+Person getAuthor(int row) {
+  return authorId[row] < 0 ? null : authors.get(authorId[row]);
+}
+
+
+Person getCommitter(int row) {
+  return committers.get(committerId[row]);
+}
+
+}
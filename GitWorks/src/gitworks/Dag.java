@@ -103,6 +103,14 @@ ArrayList<Commit> mergeCommits;
 ArrayList<Commit> branchCommits;
 ArrayList<Commit> coolCommits;
 
+// frozen adjacency of the terminal commits (compressed sparse rows), built on first use and dropped
+// whenever the metaedges change: the metaedges leaving terminal t are metaEdges.get(outEdges[k])
+// for outStart[t] <= k < outStart[t + 1], in ID order, and outTo[k] is the terminal they point to
+private CommitIndex terminals; // dense ids of the terminal commits (roots, nodes and leaves)
+private int[] outStart, outEdges, outTo;
+private int[] inStart, inEdges, inFrom;
+private EdgeTimeIndex timeIndex; // built on the first time slicing, dropped with the adjacency
+
 
 public Dag() {
   metaEdges = new ArrayList<MetaEdge>();
@@ -125,16 +133,145 @@ MetaEdge getEdge(int id) {
 
 
 int addEdge(MetaEdge me) {
+  terminals = null;
+  timeIndex = null;
   return GitWorks.addUnique(metaEdges, me);
 }
 
 
 MetaEdge removeEdge(int id) {
+  terminals = null;
+  timeIndex = null;
   int i = Collections.binarySearch(metaEdges, id);
   return i >= 0 ? metaEdges.remove(i) : null;
 }
 
 
+private void buildAdjacency() {
+  int i, k, f, l, n, m = metaEdges.size();
+  MetaEdge me;
+  terminals = new CommitIndex(nodes.size() + roots.size() + leaves.size());
+  for (Commit c : roots)
+    terminals.add(c);
+  for (Commit c : nodes)
+    terminals.add(c);
+  for (Commit c : leaves)
+    terminals.add(c);
+  for (k = 0; k < m; k++) { // in case the lists are not complete yet
+    terminals.add(metaEdges.get(k).first);
+    terminals.add(metaEdges.get(k).last);
+  }
+  n = terminals.size();
+  outStart = new int[n + 1];
+  inStart = new int[n + 1];
+  outEdges = new int[m];
+  outTo = new int[m];
+  inEdges = new int[m];
+  inFrom = new int[m];
+  int[] first = new int[m], last = new int[m];
+  for (k = 0; k < m; k++) {
+    me = metaEdges.get(k);
+    first[k] = terminals.indexOf(me.first.id);
+    last[k] = terminals.indexOf(me.last.id);
+    outStart[first[k] + 1]++;
+    inStart[last[k] + 1]++;
+  }
+  for (i = 0; i < n; i++) {
+    outStart[i + 1] += outStart[i];
+    inStart[i + 1] += inStart[i];
+  }
+  int[] outFill = Arrays.copyOf(outStart, n), inFill = Arrays.copyOf(inStart, n);
+  for (k = 0; k < m; k++) { // metaEdges is sorted, so is every row
+    f = first[k];
+    l = last[k];
+    outEdges[outFill[f]] = k;
+    outTo[outFill[f]++] = l;
+    inEdges[inFill[l]] = k;
+    inFrom[inFill[l]++] = f;
+  }
+}
+
+
+/**
+ * @return The id of the given commit among the terminal commits of this dag, or -1 if it is not
+ *         one of them.
+ */
+int getTerminalId(Commit c) {
+  if (terminals == null) buildAdjacency();
+  return terminals.indexOf(c.id);
+}
+
+
+Commit getTerminal(int t) {
+  if (terminals == null) buildAdjacency();
+  return terminals.get(t);
+}
+
+
+int getNumTerminals() {
+  if (terminals == null) buildAdjacency();
+  return terminals.size();
+}
+
+
+int getOutDegree(int t) {
+  if (terminals == null) buildAdjacency();
+  return outStart[t + 1] - outStart[t];
+}
+
+
+int getInDegree(int t) {
+  if (terminals == null) buildAdjacency();
+  return inStart[t + 1] - inStart[t];
+}
+
+
+/**
+ * @return The i-th (by ID) metaedge leaving the terminal commit t.
+ */
+MetaEdge getOutEdge(int t, int i) {
+  if (terminals == null) buildAdjacency();
+  return metaEdges.get(outEdges[outStart[t] + i]);
+}
+
+
+/**
+ * @return The i-th (by ID) metaedge entering the terminal commit t.
+ */
+MetaEdge getInEdge(int t, int i) {
+  if (terminals == null) buildAdjacency();
+  return metaEdges.get(inEdges[inStart[t] + i]);
+}
+
+
+/**
+ * @return The id of the terminal commit which the i-th metaedge leaving t points to.
+ */
+int getChild(int t, int i) {
+  if (terminals == null) buildAdjacency();
+  return outTo[outStart[t] + i];
+}
+
+
+/**
+ * @return The id of the terminal commit which the i-th metaedge entering t comes from.
+ */
+int getParent(int t, int i) {
+  if (terminals == null) buildAdjacency();
+  return inFrom[inStart[t] + i];
+}
+
+
+/**
+ * @return The index of the committing times of the metaedges, which refers to them by position in
+ *         ID order (i.e. the order of {@link #getMetaEdges()}).
+ */
+EdgeTimeIndex getTimeIndex() {
+  if (timeIndex == null) timeIndex = new EdgeTimeIndex(metaEdges);
+  return timeIndex;
+}
+
+
 Iterator<MetaEdge> getMetaEdges() {
   return metaEdges.iterator();
 }
@@ -156,8 +293,14 @@ int getNumMetaEdges() {
 ArrayList<MetaEdge> getOutEdges(Commit c) {
   ArrayList<MetaEdge> res = new ArrayList<MetaEdge>(c.outDegree);
   MetaEdge me;
-  for (int i : c.edges) {
-    me = GitWorks.getElement(metaEdges, i);
+  int t = getTerminalId(c);
+  if (t >= 0) {
+    for (int i = 0; i < getOutDegree(t); i++)
+      res.add(getOutEdge(t, i));
+    return res;
+  }
+  for (int i = 0; i < c.edges.size(); i++) {
+    me = GitWorks.getElement(metaEdges, c.edges.get(i));
     if (!me.last.equals(c)) { // c is internal or first
       GitWorks.addUnique(res, me); // sorted list
     }
@@ -169,8 +312,14 @@ ArrayList<MetaEdge> getOutEdges(Commit c) {
 ArrayList<MetaEdge> getInEdges(Commit c) {
   ArrayList<MetaEdge> res = new ArrayList<MetaEdge>(c.inDegree);
   MetaEdge me;
-  for (int i : c.edges) {
-    me = GitWorks.getElement(metaEdges, i);
+  int t = getTerminalId(c);
+  if (t >= 0) {
+    for (int i = 0; i < getInDegree(t); i++)
+      res.add(getInEdge(t, i));
+    return res;
+  }
+  for (int i = 0; i < c.edges.size(); i++) {
+    me = GitWorks.getElement(metaEdges, c.edges.get(i));
     if (!me.first.equals(c)) { // c is internal or last
       GitWorks.addUnique(res, me); // sorted list
     }
@@ -184,6 +333,17 @@ int getDiameter() {
 }
 
 
+/**
+ * It sets the diameter out of the layers the commits already have (e.g. when read from a dump),
+ * so that a dag which is not visited again keeps consistent layer stats.
+ */
+void restoreDiameter() {
+  diameter = 0;
+  for (Commit c : leaves)
+    diameter = Math.max(diameter, c.layer);
+}
+
+
 int getMaxWidth() {
   if (maxWidth == -1) computeLayerSizes();
   return maxWidth;
@@ -280,7 +440,7 @@ private void computeLayerTimes() {
     layerTimes[1][me.last.layer] = Math.max(layerTimes[1][me.last.layer], me.endTimestamp);
   }
   for (Commit c : roots) {
-    t = c.getCommittingInfo().getWhen().getTime();
+    t = c.getCommitTime();
     layerTimes[0][0] = Math.min(layerTimes[0][0], t);
     layerTimes[1][0] = Math.max(layerTimes[1][0], t);
   }
@@ -293,6 +453,7 @@ private void computeLayerTimes() {
  */
 int[] getSummaryStats() {
   boolean merge, branch;
+  int t;
   if (mergeCommits == null) {
     mergeCommits = new ArrayList<Commit>(nodes.size());
     branchCommits = new ArrayList<Commit>(nodes.size());
@@ -303,11 +464,12 @@ int[] getSummaryStats() {
     allIn.addAll(nodes);
     allIn.addAll(roots);
     for (Commit c : allIn) {
-      if (getInEdges(c).size() > 1)
+      t = getTerminalId(c);
+      if (getInDegree(t) > 1)
         merge = true;
       else
         merge = false;
-      if (getOutEdges(c).size() > 1)
+      if (getOutDegree(t) > 1)
         branch = true;
       else
         branch = false;
@@ -328,58 +490,61 @@ int[] getSummaryStats() {
 
 /**
  * It assigns layers to commits and sets the diameter. It also sets the timestamps for each
- * metaedge.
+ * metaedge. Layers are built Kahn-style: a commit is placed in the layer following the one of its
+ * last parent to be placed, i.e. as soon as its counter of parents still to be placed drops to 0.
  * 
  * @return non-sequential commits in bf order, with ties decided by comparing commits with
  *         Metagraph.NodeDegreeComparator
  */
 Commit[] bfVisit() {
-  int i, curSize, layer = 0, size = 0, next = 0,
-      tot = nodes.size() + roots.size() + leaves.size();
-  boolean done;
+  int i, j, curSize, n, t, layer = 0, size = 0, next = 0;
   Commit c;
   MetaGraph.NodeDegreeComparator nodeComp = new MetaGraph.NodeDegreeComparator();
-  Commit[] res = new Commit[tot];
-  ArrayList<Commit> prev = new ArrayList<Commit>();
-  ArrayList<Commit> cur = new ArrayList<Commit>(); // to check for duplicates in res
-  prev.addAll(roots);
-  cur.addAll(roots);
+  n = getNumTerminals();
+  int[] pending = new int[n]; // number of parents not placed yet, -1 once placed
+  for (t = 0; t < n; t++)
+    pending[t] = getInDegree(t);
+  int[] ids = new int[n]; // terminal ids of the commits in res
+  Commit[] res = new Commit[n];
   for (Commit r : roots) {
     r.layer = 0;
+    pending[getTerminalId(r)] = -1;
     res[next++] = r;
   }
   Arrays.sort(res, size, next, nodeComp);
-  while (prev.size() < tot) {
+  for (i = size; i < next; i++)
+    ids[i] = getTerminalId(res[i]);
+  while (next < n) {
     layer++;
     curSize = next;
-    for (i = size; i < curSize; i++) {
-      c = res[i];
-      for (MetaEdge e : getOutEdges(c)) {
-        done = true;
-        for (MetaEdge me : getInEdges(e.last)) {
-          if (Collections.binarySearch(prev, me.first) < 0) {
-            done = false;
-            break;
-          }
-        }
-        if (done) {
-          e.last.layer = layer;
-          if (Collections.binarySearch(cur, e.last) < 0) {
-            res[next++] = e.last;
-            GitWorks.addUnique(cur, e.last);
-          }
+    for (i = size; i < curSize; i++)
+      for (j = 0; j < getOutDegree(ids[i]); j++)
+        pending[getChild(ids[i], j)]--;
+    // commits enter the layer in the order the previous one reaches them first, as sorting is stable
+    for (i = size; i < curSize; i++)
+      for (j = 0; j < getOutDegree(ids[i]); j++) {
+        t = getChild(ids[i], j);
+        if (pending[t] == 0) {
+          pending[t] = -1;
+          c = getTerminal(t);
+          c.layer = layer;
+          res[next++] = c;
         }
       }
+    if (next == curSize) {
+      System.err.println("Dag : ERROR : " + (n - next) + " commits cannot be reached from the roots.");
+      layer--;
+      break;
     }
     size = curSize;
     Arrays.sort(res, size, next, nodeComp);
     for (i = size; i < next; i++)
-      GitWorks.addUnique(prev, res[i]);
+      ids[i] = getTerminalId(res[i]);
   }
   diameter = layer;
   if (!metaEdges.isEmpty()) for (MetaEdge me : metaEdges) {
-    me.startTimestamp = me.first.getCommittingInfo().getWhen().getTime();
-    me.endTimestamp = me.last.getCommittingInfo().getWhen().getTime();
+    me.startTimestamp = me.first.getCommitTime();
+    me.endTimestamp = me.last.getCommitTime();
   }
   return res;
 }
@@ -413,8 +578,8 @@ void bfPrintout(Commit[] commits) {
  * @return
  */
 MetaGraph buildNewMetaGraph(Date minAge, Date maxAge) {
-  int i;
-  Date dFirst, dLast;
+  int i, k;
+  long dFirst, dLast, min, max;
   Commit leaf, first, c, co;
   boolean firstIn, lastIn;
   if (minAge == null && maxAge == null) return MetaGraph.createMetaGraph(this);
@@ -426,29 +591,33 @@ MetaGraph buildNewMetaGraph(Date minAge, Date maxAge) {
   ArrayList<MetaEdge> oddCut = new ArrayList<MetaEdge>();
   if (minAge == null) minAge = new Date(0L);
   if (maxAge == null) maxAge = new Date(System.currentTimeMillis() + (1000 * 3600 * 24 * 7));
+  min = minAge.getTime();
+  max = maxAge.getTime();
 
   if (metaEdges.size() == 0) {
     for (Commit cc : roots) {
-      dFirst = cc.getCommittingInfo().getWhen();
-      if (dFirst.compareTo(maxAge) <= 0 && dFirst.compareTo(minAge) >= 0) {
+      dFirst = cc.getCommitTime();
+      if (dFirst <= max && dFirst >= min) {
         co = new Commit(cc);
         GitWorks.addUnique(allCommits, co);
         GitWorks.addUnique(heads, co);
       }
     }
   }
-  for (MetaEdge me : metaEdges) {
-    dFirst = me.first.getCommittingInfo().getWhen();
-    dLast = me.last.getCommittingInfo().getWhen();
-    firstIn = dFirst.compareTo(maxAge) <= 0 && dFirst.compareTo(minAge) >= 0;
-    lastIn = dLast.compareTo(maxAge) <= 0 && dLast.compareTo(minAge) >= 0;
+  if (timeIndex == null) timeIndex = new EdgeTimeIndex(metaEdges);
+  for (int e : timeIndex.query(min, max)) { // only the edges touching [min, max]
+    MetaEdge me = metaEdges.get(e);
+    dFirst = timeIndex.getFirstTime(e);
+    dLast = timeIndex.getLastTime(e);
+    firstIn = dFirst <= max && dFirst >= min;
+    lastIn = dLast <= max && dLast >= min;
     if (firstIn && lastIn) {
       middleCut.add(me);
     } else if (firstIn && !lastIn) {
       topCut.add(me);
     } else if (!firstIn && lastIn) {
       bottomCut.add(me);
-    } else if (dFirst.compareTo(minAge) < 0 && dLast.compareTo(maxAge) > 0) {
+    } else if (dFirst < min && dLast > max) {
       oddCut.add(me);
     }
   }
@@ -472,13 +641,13 @@ MetaGraph buildNewMetaGraph(Date minAge, Date maxAge) {
     ArrayList<Commit> coms;
     if (me.getWeight() > 0) {
       coms = me.getInternals();
-      for (i = coms.size() - 1; i >= 0; i--) {
-        c = coms.get(i);
-        if (first == null && c.getCommittingInfo().getWhen().compareTo(minAge) >= 0) {
-          first = new Commit(c);
-          GitWorks.addUnique(allCommits, first);
-        } else if (first != null) {
-          co = new Commit(c);
+      k = Collections.binarySearch(metaEdges, me.ID);
+      i = timeIndex.lastInternalFrom(k, min); // the oldest internal commit in the range
+      if (i >= 0) {
+        first = new Commit(coms.get(i));
+        GitWorks.addUnique(allCommits, first);
+        for (i--; i >= 0; i--) {
+          co = new Commit(coms.get(i));
           GitWorks.addUnique(allCommits, co);
         }
       }
@@ -491,13 +660,13 @@ MetaGraph buildNewMetaGraph(Date minAge, Date maxAge) {
   for (MetaEdge me : topCut) {
     leaf = null;
     if (me.getWeight() > 0) {
-      for (Commit cc : me.getInternals()) {
-        dLast = cc.getCommittingInfo().getWhen();
-        if (leaf == null && dLast.compareTo(maxAge) <= 0) {
-          leaf = new Commit(cc);
-          GitWorks.addUnique(allCommits, leaf);
-        } else if (leaf != null) {
-          co = new Commit(cc);
+      k = Collections.binarySearch(metaEdges, me.ID);
+      i = timeIndex.firstInternalUpTo(k, max); // the latest internal commit in the range
+      if (i >= 0) {
+        leaf = new Commit(me.getInternals().get(i));
+        GitWorks.addUnique(allCommits, leaf);
+        for (i++; i < me.getWeight(); i++) {
+          co = new Commit(me.getInternals().get(i));
           GitWorks.addUnique(allCommits, co);
         }
       }
@@ -513,9 +682,11 @@ MetaGraph buildNewMetaGraph(Date minAge, Date maxAge) {
   for (MetaEdge me : oddCut) {
     leaf = null;
     if (me.getWeight() > 0) {
-      for (Commit cc : me.getInternals()) {
-        dFirst = cc.getCommittingInfo().getWhen();
-        firstIn = dFirst.compareTo(maxAge) <= 0 && dFirst.compareTo(minAge) >= 0;
+      k = Collections.binarySearch(metaEdges, me.ID);
+      for (i = 0; i < me.getWeight(); i++) {
+        Commit cc = me.getInternals().get(i);
+        dFirst = timeIndex.getInternalTime(k, i);
+        firstIn = dFirst <= max && dFirst >= min;
         if (firstIn) {
           if (leaf == null) {
             leaf = new Commit(cc);
@@ -548,9 +719,9 @@ MetaGraph buildNewMetaGraph(Date minAge, Date maxAge) {
  * ).
  */
 MetaGraph buildSubGraph(Date minAge, Date maxAge) { // FIXME ?
-  int i;
+  int i, k;
   MetaEdge newme;
-  Date dFirst, dLast;
+  long dFirst, dLast, min, max;
   Commit leaf, first, c, co;
   boolean firstIn, lastIn;
   if (minAge == null && maxAge == null) return MetaGraph.createMetaGraph(this);
@@ -565,6 +736,8 @@ MetaGraph buildSubGraph(Date minAge, Date maxAge) { // FIXME ?
     minAge = new Date(0L);
   if (maxAge == null)
     maxAge = new Date(System.currentTimeMillis() + (1000 * 3600 * 24 * 7));
+  min = minAge.getTime();
+  max = maxAge.getTime();
 
   if (metaEdges.size() == 0) {
     if (roots.size() > 1) {
@@ -572,24 +745,26 @@ MetaGraph buildSubGraph(Date minAge, Date maxAge) { // FIXME ?
       System.exit(2);
     } else if (roots.size() > 0) {
       c = roots.get(0);
-      dFirst = c.getCommittingInfo().getWhen();
-      if (dFirst.compareTo(maxAge) <= 0 && dFirst.compareTo(minAge) >= 0) {
+      dFirst = c.getCommitTime();
+      if (dFirst <= max && dFirst >= min) {
         GitWorks.addUnique(allCommits, c);
       }
     }
   }
-  for (MetaEdge me : metaEdges) {
-    dFirst = me.first.getCommittingInfo().getWhen();
-    dLast = me.last.getCommittingInfo().getWhen();
-    firstIn = dFirst.compareTo(maxAge) <= 0 && dFirst.compareTo(minAge) >= 0;
-    lastIn = dLast.compareTo(maxAge) <= 0 && dLast.compareTo(minAge) >= 0;
+  if (timeIndex == null) timeIndex = new EdgeTimeIndex(metaEdges);
+  for (int e : timeIndex.query(min, max)) { // only the edges touching [min, max]
+    MetaEdge me = metaEdges.get(e);
+    dFirst = timeIndex.getFirstTime(e);
+    dLast = timeIndex.getLastTime(e);
+    firstIn = dFirst <= max && dFirst >= min;
+    lastIn = dLast <= max && dLast >= min;
     if (firstIn && lastIn) {
       middleCut.add(me);
     } else if (firstIn && !lastIn) {
       topCut.add(me);
     } else if (!firstIn && lastIn) {
       bottomCut.add(me);
-    } else if (dFirst.compareTo(minAge) < 0 && dLast.compareTo(maxAge) > 0) {
+    } else if (dFirst < min && dLast > max) {
       oddCut.add(me);
     }
   }
@@ -602,12 +777,12 @@ MetaGraph buildSubGraph(Date minAge, Date maxAge) { // FIXME ?
     co = allCommits.get(GitWorks.addUnique(allCommits, co));
     newme.first = co;
     co.outDegree++;
-    GitWorks.addUnique(co.edges, newme.ID);
+    co.edges.add(newme.ID);
     co = new Commit(me.last);
     co = allCommits.get(GitWorks.addUnique(allCommits, co));
     newme.last = co;
     co.inDegree++;
-    GitWorks.addUnique(co.edges, newme.ID);
+    co.edges.add(newme.ID);
     if (Collections.binarySearch(leaves, me.last) >= 0)
       GitWorks.addUnique(heads, co);
     if (me.getWeight() > 0) {
@@ -625,18 +800,18 @@ MetaGraph buildSubGraph(Date minAge, Date maxAge) { // FIXME ?
     ArrayList<Commit> coms;
     if (me.getWeight() > 0) {
       coms = me.getInternals();
-      for (i = coms.size() - 1; i >= 0 && first == null; i--) {
+      k = Collections.binarySearch(metaEdges, me.ID);
+      i = timeIndex.lastInternalFrom(k, min); // the oldest internal commit in the range
+      if (i >= 0) {
         c = coms.get(i);
-        if (c.getCommittingInfo().getWhen().compareTo(minAge) >= 0) {
-          first = new Commit(c);
-          newme.first = first;
-          newme.startTimestamp = first.getCommittingInfo().getWhen().getTime();
-          first.outDegree++;
-          GitWorks.addUnique(first.edges, newme.ID);
-          GitWorks.addUnique(allCommits, first);
-        }
+        first = new Commit(c);
+        newme.first = first;
+        newme.startTimestamp = first.getCommitTime();
+        first.outDegree++;
+        first.edges.add(newme.ID);
+        GitWorks.addUnique(allCommits, first);
       }
-      for (int j = 0; j < i; j++) {
+      for (int j = 0; j < i; j++) { // all the internal commits after first
         c = coms.get(j);
         newme.addInternal(c);
         GitWorks.addUnique(allCommits, c);
@@ -649,7 +824,7 @@ MetaGraph buildSubGraph(Date minAge, Date maxAge) { // FIXME ?
     if (first != null) {
       co.inDegree++;
       GitWorks.addUnique(edges, newme);
-      GitWorks.addUnique(co.edges, newme.ID);
+      co.edges.add(newme.ID);
     }
     if (Collections.binarySearch(leaves, me.last) >= 0)
       GitWorks.addUnique(heads, co);
@@ -659,18 +834,19 @@ MetaGraph buildSubGraph(Date minAge, Date maxAge) { // FIXME ?
     leaf = null;
     newme = new MetaEdge(me);
     if (me.getWeight() > 0) {
-      for (Commit cc : me.getInternals()) {
-        dLast = cc.getCommittingInfo().getWhen();
-        if (leaf == null && dLast.compareTo(maxAge) <= 0) {
-          leaf = new Commit(cc);
-          newme.last = leaf;
-          newme.endTimestamp = leaf.getCommittingInfo().getWhen().getTime();
-          leaf.inDegree++;
-          GitWorks.addUnique(leaf.edges, newme.ID);
-          GitWorks.addUnique(allCommits, leaf);
-        } else if (leaf != null) {
-          newme.addInternal(cc);
-          GitWorks.addUnique(allCommits, cc);
+      k = Collections.binarySearch(metaEdges, me.ID);
+      i = timeIndex.firstInternalUpTo(k, max); // the latest internal commit in the range
+      if (i >= 0) {
+        leaf = new Commit(me.getInternals().get(i));
+        newme.last = leaf;
+        newme.endTimestamp = leaf.getCommitTime();
+        leaf.inDegree++;
+        leaf.edges.add(newme.ID);
+        GitWorks.addUnique(allCommits, leaf);
+        for (i++; i < me.getWeight(); i++) {
+          c = me.getInternals().get(i);
+          newme.addInternal(c);
+          GitWorks.addUnique(allCommits, c);
         }
       }
     }
@@ -681,7 +857,7 @@ MetaGraph buildSubGraph(Date minAge, Date maxAge) { // FIXME ?
     if (leaf != null) {
       co.outDegree++;
       GitWorks.addUnique(edges, newme);
-      GitWorks.addUnique(co.edges, newme.ID);
+      co.edges.add(newme.ID);
     }
     if (leaf == null) GitWorks.addUnique(heads, co);
     else GitWorks.addUnique(heads, leaf);
@@ -692,14 +868,16 @@ MetaGraph buildSubGraph(Date minAge, Date maxAge) { // FIXME ?
     co = null;
     newme = new MetaEdge(me);
     if (me.getWeight() > 0) {
-      for (Commit cc : me.getInternals()) {
-        dFirst = cc.getCommittingInfo().getWhen();
-        firstIn = dFirst.compareTo(maxAge) <= 0 && dFirst.compareTo(minAge) >= 0;
+      k = Collections.binarySearch(metaEdges, me.ID);
+      for (i = 0; i < me.getWeight(); i++) {
+        Commit cc = me.getInternals().get(i);
+        dFirst = timeIndex.getInternalTime(k, i);
+        firstIn = dFirst <= max && dFirst >= min;
         if (firstIn) {
           if (leaf == null) {
             leaf = new Commit(cc);
             newme.last = leaf;
-            newme.endTimestamp = leaf.getCommittingInfo().getWhen().getTime();
+            newme.endTimestamp = leaf.getCommitTime();
             GitWorks.addUnique(allCommits, leaf);
           } else {
             co = new Commit(cc);
@@ -713,15 +891,15 @@ MetaGraph buildSubGraph(Date minAge, Date maxAge) { // FIXME ?
         GitWorks.addUnique(allCommits, co);
         newme.getInternals().remove(newme.getInternals().size() - 1); // remove equal cc
         newme.first = co;
-        newme.startTimestamp = co.getCommittingInfo().getWhen().getTime();
+        newme.startTimestamp = co.getCommitTime();
       }
     }
     if (leaf != null) GitWorks.addUnique(heads, leaf);
     if (newme.first != null && newme.last != null) {
       newme.first.outDegree++;
       newme.last.inDegree++;
-      GitWorks.addUnique(newme.first.edges, newme.ID);
-      GitWorks.addUnique(newme.last.edges, newme.ID);
+      newme.first.edges.add(newme.ID);
+      newme.last.edges.add(newme.ID);
       GitWorks.addUnique(edges, newme);
     }
   }
@@ -734,9 +912,9 @@ MetaGraph buildSubGraph(Date minAge, Date maxAge) { // FIXME ?
   if (edges.size() == 0) {
     MetaGraph res = new MetaGraph(allCommits);
     for (Commit cc : allCommits) {
-      dFirst = cc.getCommittingInfo().getWhen();
-      res.since = Math.min(dFirst.getTime(), res.since);
-      res.until = Math.max(dFirst.getTime(), res.until);
+      dFirst = cc.getCommitTime();
+      res.since = Math.min(dFirst, res.since);
+      res.until = Math.max(dFirst, res.until);
       Dag d = new Dag();
       d.roots.add(cc);
       res.dags.add(d);
@@ -748,25 +926,25 @@ MetaGraph buildSubGraph(Date minAge, Date maxAge) { // FIXME ?
 
 
 double checkTimestamps() {
-  Date t1, t2;
+  long t1, t2;
   Commit cur;
   int count = 0;
   for (MetaEdge me : metaEdges) {
     cur = me.last;
     if (me.getWeight() > 0) {
       for (Commit c : me.getInternals()) {
-        t1 = cur.getCommittingInfo().getWhen();
-        t2 = c.getCommittingInfo().getWhen();
-        if (t1.compareTo(t2) < 0) {
+        t1 = cur.getCommitTime();
+        t2 = c.getCommitTime();
+        if (t1 < t2) {
           System.err.println("\tTimestamp inconsistency in commit " + cur.id.getName());
           count++;
         }
         cur = c;
       }
     }
-    t1 = cur.getCommittingInfo().getWhen();
-    t2 = me.first.getCommittingInfo().getWhen();
-    if (t1.compareTo(t2) < 0) {
+    t1 = cur.getCommitTime();
+    t2 = me.first.getCommitTime();
+    if (t1 < t2) {
       System.err.println("\tTimestamp inconsistency in commit " + cur.id.getName());
       count++;
     }
@@ -778,6 +956,8 @@ double checkTimestamps() {
 boolean checkup(boolean verify) {
   boolean res = true;
   int prev = 0, tot = getNumCommits();
+  terminals = null; // the dag is complete: its adjacency is built anew
+  timeIndex = null;
   metaEdges.trimToSize();
   leaves.trimToSize();
   nodes.trimToSize();
@@ -797,7 +977,7 @@ boolean checkup(boolean verify) {
     if (me.getWeight() > 0)
       for (Commit c : me.getInternals()) {
         internals.add(c);
-        if (Collections.binarySearch(c.edges, me.ID) < 0) {
+        if (c.edges.indexOf(me.ID) < 0) {
           System.err.println("Dag checkup : ERROR : internal commit " + c.id.getName()
               + " lacks pointer to edge " + me.ID + " .");
           res = false;
@@ -809,13 +989,13 @@ boolean checkup(boolean verify) {
         }
       }
     GitWorks.addUnique(terminals, me.first);
-    if (Collections.binarySearch(me.first.edges, me.ID) < 0) {
+    if (me.first.edges.indexOf(me.ID) < 0) {
       System.err.println("Dag checkup : ERROR : terminal commit " + me.first.id.getName()
           + " lacks pointer to edge " + me.ID + " .");
       res = false;
     }
     GitWorks.addUnique(terminals, me.last);
-    if (Collections.binarySearch(me.last.edges, me.ID) < 0) {
+    if (me.last.edges.indexOf(me.ID) < 0) {
       System.err.println("Dag checkup : ERROR : terminal commit " + me.last.id.getName()
           + " lacks pointer to edge " + me.ID + " .");
       res = false;
@@ -964,7 +1144,7 @@ void exportToGexf(String name) { // XXX
             .addValue(attBranches, "" + c.branches.size())
             .addValue(attHeads, "" + (c.isHead() ? c.heads.size() : 0))
             .addValue(attExtremal, "false")
-            .addValue(attTstamp, "" + c.getCommittingInfo().getWhen().getTime());
+            .addValue(attTstamp, "" + c.getCommitTime());
     cache.add(node);
   }
   for (Commit c : leaves) {
@@ -975,7 +1155,7 @@ void exportToGexf(String name) { // XXX
             .addValue(attBranches, "" + c.branches.size())
             .addValue(attHeads, "" + (c.isHead() ? c.heads.size() : 0)) // possibly not head if subgraph
             .addValue(attExtremal, "true")
-            .addValue(attTstamp, "" + c.getCommittingInfo().getWhen().getTime());
+            .addValue(attTstamp, "" + c.getCommitTime());
     cache.add(node);
   }
   for (Commit c : roots) {
@@ -986,7 +1166,7 @@ void exportToGexf(String name) { // XXX
             .addValue(attBranches, "" + c.branches.size())
             .addValue(attHeads, "" + (c.isHead() ? c.heads.size() : 0))
             .addValue(attExtremal, "true")
-            .addValue(attTstamp, "" + c.getCommittingInfo().getWhen().getTime());
+            .addValue(attTstamp, "" + c.getCommitTime());
     cache.add(node);
   }
 
@@ -0,0 +1,254 @@
+package gitworks;
+
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+
+/**
+ * A time window sliding over a dag. The window holds the metaedges whose first and last commits are
+ * both within [min, max] (committing date is considered), i.e. what {@link Dag#buildSubGraph} puts
+ * in its middle cut, and the terminal commits they connect. Nothing is copied: when the window
+ * moves forward, the metaedges entering and leaving it are applied as deltas to degree counters,
+ * layer sizes and summary stats, so that each edge enters and leaves at most once over a whole
+ * sweep of the history. Moving the window backwards starts over from an empty window.
+ */
+class DagWindow {
+
+private static final byte WAITING = 0, IN = 1, OUT = 2;
+
+private Dag dag;
+private int[] edgeFirst; // terminal id of the first commit of each edge (by position)
+private int[] edgeLast; // terminal id of the last commit of each edge
+private int[] edgeWeight;
+private int[] layer; // layer of each terminal commit in the whole dag
+private long[] lo; // the earlier committing time between first and last of each edge
+private long[] hi; // the later one
+private int[] byLo; // edges sorted by lo: they leave the window in this order
+private int[] byHi; // edges sorted by hi: they may enter the window in this order
+private int nextOut, nextIn; // positions in byLo and byHi of the next edges to be checked
+private byte[] state;
+private long min, max;
+
+private int[] inDeg, outDeg; // degrees of the terminal commits within the window
+private int[] inHist, outHist, degHist; // number of terminal commits in the window per degree
+private int[][] layerSizes; // as Dag.getLayerSizes(), for the window
+private int numRoots, numNodes, numLeaves, numEdges, numInternals;
+private int numBranch, numMerge, numCool;
+
+
+/**
+ * It prepares an empty window over the given dag, which must not change while the window is in
+ * use. Layers are taken from the dag, thus they are set by {@link Dag#bfVisit()} first, if needed.
+ */
+DagWindow(Dag d) {
+  int k, t, n, m = d.getNumMetaEdges(), maxIn = 0, maxOut = 0, maxDeg = 0;
+  MetaEdge me;
+  EdgeTimeIndex ti = d.getTimeIndex();
+  dag = d;
+  n = d.getNumTerminals();
+  layer = new int[n];
+  for (t = 0; t < n; t++) {
+    layer[t] = d.getTerminal(t).layer;
+    if (layer[t] < 0 || layer[t] > d.getDiameter()) break;
+  }
+  if (t < n) {
+    d.bfVisit();
+    for (t = 0; t < n; t++)
+      layer[t] = d.getTerminal(t).layer;
+  }
+  for (t = 0; t < n; t++) {
+    maxIn = Math.max(maxIn, d.getInDegree(t));
+    maxOut = Math.max(maxOut, d.getOutDegree(t));
+    maxDeg = Math.max(maxDeg, d.getInDegree(t) + d.getOutDegree(t));
+  }
+  edgeFirst = new int[m];
+  edgeLast = new int[m];
+  edgeWeight = new int[m];
+  lo = new long[m];
+  hi = new long[m];
+  Iterator<MetaEdge> mIt = d.getMetaEdges();
+  for (k = 0; k < m; k++) {
+    me = mIt.next();
+    edgeFirst[k] = d.getTerminalId(me.first);
+    edgeLast[k] = d.getTerminalId(me.last);
+    edgeWeight[k] = me.getWeight();
+    lo[k] = Math.min(ti.getFirstTime(k), ti.getLastTime(k));
+    hi[k] = Math.max(ti.getFirstTime(k), ti.getLastTime(k));
+  }
+  byLo = IndexedSortable.sortedPermutation(lo, false);
+  byHi = IndexedSortable.sortedPermutation(hi, false);
+  state = new byte[m];
+  inDeg = new int[n];
+  outDeg = new int[n];
+  inHist = new int[maxIn + 1];
+  outHist = new int[maxOut + 1];
+  degHist = new int[maxDeg + 1];
+  layerSizes = new int[2][d.getDiameter() + 1];
+  reset();
+}
+
+
+private void reset() {
+  Arrays.fill(state, WAITING);
+  Arrays.fill(inDeg, 0);
+  Arrays.fill(outDeg, 0);
+  Arrays.fill(inHist, 0);
+  Arrays.fill(outHist, 0);
+  Arrays.fill(degHist, 0);
+  for (int[] l : layerSizes)
+    Arrays.fill(l, 0);
+  numRoots = numNodes = numLeaves = numEdges = numInternals = 0;
+  numBranch = numMerge = numCool = 0;
+  nextOut = nextIn = 0;
+  min = max = Long.MIN_VALUE;
+}
+
+
+// it adds (sign = 1) or removes (sign = -1) the contribution of terminal t to the window stats
+private void count(int t, int sign) {
+  int in = inDeg[t], out = outDeg[t];
+  if (in + out == 0) return; // not in the window
+  if (in == 0)
+    numRoots += sign;
+  else if (out == 0)
+    numLeaves += sign;
+  else
+    numNodes += sign;
+  if (in > 1 && out > 1)
+    numCool += sign;
+  else if (in > 1)
+    numMerge += sign;
+  else if (out > 1) numBranch += sign;
+  inHist[in] += sign;
+  outHist[out] += sign;
+  degHist[in + out] += sign;
+  layerSizes[0][layer[t]] += sign;
+}
+
+
+// it adds (sign = 1) or removes (sign = -1) edge k to/from the window
+private void update(int k, int sign) {
+  int f = edgeFirst[k], l = edgeLast[k];
+  count(f, -1);
+  count(l, -1);
+  outDeg[f] += sign;
+  inDeg[l] += sign;
+  count(f, 1);
+  count(l, 1);
+  numEdges += sign;
+  numInternals += sign * edgeWeight[k];
+  for (int i = layer[l]; i > layer[f]; i--)
+    layerSizes[1][i] += sign;
+}
+
+
+/**
+ * It moves the window to [min, max]. If neither bound decreases, only the edges leaving and
+ * entering the window are visited.
+ */
+void moveTo(long min, long max) {
+  int k;
+  if (min < this.min || max < this.max) reset();
+  this.min = min;
+  this.max = max;
+  while (nextOut < byLo.length && lo[byLo[nextOut]] < min) { // gone for good
+    k = byLo[nextOut++];
+    if (state[k] == IN) update(k, -1);
+    state[k] = OUT;
+  }
+  while (nextIn < byHi.length && hi[byHi[nextIn]] <= max) {
+    k = byHi[nextIn++];
+    if (state[k] == WAITING) {
+      update(k, 1);
+      state[k] = IN;
+    }
+  }
+}
+
+
+/**
+ * It shifts both bounds of the window by the given amount of time (ms).
+ */
+void slide(long step) {
+  moveTo(min + step, max + step);
+}
+
+
+long getMin() {
+  return min;
+}
+
+
+long getMax() {
+  return max;
+}
+
+
+Dag getDag() {
+  return dag;
+}
+
+
+int getNumMetaEdges() {
+  return numEdges;
+}
+
+
+int getNumCommits() {
+  return numRoots + numNodes + numLeaves + numInternals;
+}
+
+
+/**
+ * @return The same stats as {@link Dag#getSummaryStats()}, for the commits in the window.
+ */
+int[] getSummaryStats() {
+  return new int[] {numRoots, numNodes, numLeaves, numEdges, numBranch, numMerge, numCool,
+      getNumCommits()};
+}
+
+
+/**
+ * @return The same as {@link Dag#getLayerSizes()} for the commits in the window, according to the
+ *         layers of the whole dag.
+ */
+int[][] getLayerSizes() {
+  int[][] res = new int[layerSizes.length][];
+  for (int i = 0; i < layerSizes.length; i++)
+    res[i] = Arrays.copyOf(layerSizes[i], layerSizes[i].length);
+  return res;
+}
+
+
+// the highest degree with a non-zero count, or 0
+private static int maxOf(int[] hist) {
+  int d = hist.length - 1;
+  while (d > 0 && hist[d] == 0)
+    d--;
+  return d;
+}
+
+
+// the degree at position size / 2 among the sorted degrees, or 0
+private static int medianOf(int[] hist, int size) {
+  int d, seen = 0;
+  for (d = 0; d < hist.length; d++) {
+    seen += hist[d];
+    if (seen > size / 2) return d;
+  }
+  return 0;
+}
+
+
+/**
+ * @return Max and median in-degree, out-degree and degree of the terminal commits in the window:
+ *         {maxIn, maxOut, medIn, medOut, maxDeg, medDeg}.
+ */
+int[] getDegreeStats() {
+  int size = numRoots + numNodes + numLeaves;
+  return new int[] {maxOf(inHist), maxOf(outHist), medianOf(inHist, size),
+      medianOf(outHist, size), maxOf(degHist), medianOf(degHist, size)};
+}
+
+}
@@ -0,0 +1,399 @@
+package gitworks;
+
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.Externalizable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+
+/**
+ * Compression codecs of the .gm and .feat dumps. Gzip dumps are plain gzip streams, as they have
+ * always been; dumps written with any other codec start with a 4 byte header ("GWZ" and the codec
+ * id), thus the reader picks the right codec by itself and old dumps still load.<br>
+ * The fast codec is a block-wise LZ77 in the spirit of LZ4: 64KB blocks, 4 byte minimum matches
+ * found through a hash table, 16 bit offsets and no entropy coding. It trades some compression ratio
+ * for much faster encoding and decoding than gzip.
+ */
+class DumpCodec {
+
+static final int NONE = 0;
+static final int FAST = 1;
+static final int GZIP = 2;
+static final String[] names = {"none", "fast", "gzip"};
+
+private static final byte[] MAGIC = {'G', 'W', 'Z'};
+
+
+/**
+ * @return The id of the codec with the given name.
+ */
+static int forName(String name) {
+  for (int i = 0; i < names.length; i++)
+    if (names[i].equalsIgnoreCase(name)) return i;
+  throw new IllegalArgumentException("DumpCodec : ERROR : unknown codec " + name + ".");
+}
+
+
+/**
+ * It writes the header of the given codec (if any) and returns a stream compressing into out.
+ * Closing it finishes the dump.
+ */
+static OutputStream compress(OutputStream out, int codec) throws IOException {
+  if (codec == GZIP) return new GZIPOutputStream(out);
+  out.write(MAGIC);
+  out.write(codec);
+  switch (codec) {
+  case NONE:
+    return out;
+  case FAST:
+    return new FastOutputStream(out);
+  default:
+    throw new IllegalArgumentException("DumpCodec : ERROR : unknown codec " + codec + ".");
+  }
+}
+
+
+/**
+ * @return A stream decompressing in, according to the header of the dump.
+ */
+static InputStream decompress(InputStream in) throws IOException {
+  if (!in.markSupported()) in = new BufferedInputStream(in);
+  byte[] head = new byte[MAGIC.length + 1];
+  in.mark(head.length);
+  int n = 0, r;
+  while (n < head.length && (r = in.read(head, n, head.length - n)) > 0)
+    n += r;
+  if (n >= 2 && (head[0] & 0xff) == 0x1f && (head[1] & 0xff) == 0x8b) { // gzip magic
+    in.reset();
+    return new GZIPInputStream(in);
+  }
+  if (n < head.length || head[0] != MAGIC[0] || head[1] != MAGIC[1] || head[2] != MAGIC[2])
+    throw new IOException("DumpCodec : ERROR : unknown dump format.");
+  switch (head[3]) {
+  case NONE:
+    return in;
+  case FAST:
+    return new FastInputStream(in);
+  default:
+    throw new IOException("DumpCodec : ERROR : unknown codec " + head[3] + ".");
+  }
+}
+
+
+private static final int BLOCK = 1 << 16;
+private static final int HASH_BITS = 14;
+private static final int MIN_MATCH = 4;
+private static final int LAST_LITERALS = 5; // the end of a block is always copied as literals
+private static final int MAX_OFFSET = 0xffff;
+
+
+private static int readInt(byte[] a, int i) {
+  return (a[i] & 0xff) | (a[i + 1] & 0xff) << 8 | (a[i + 2] & 0xff) << 16 | (a[i + 3] & 0xff) << 24;
+}
+
+
+// it writes a length which did not fit its 4 bits in the token
+private static int writeLength(int len, byte[] dst, int op) {
+  for (; len >= 255; len -= 255)
+    dst[op++] = (byte)255;
+  dst[op++] = (byte)len;
+  return op;
+}
+
+
+// it writes a sequence: a token, the literals and, unless matchLen is 0, a back-reference
+private static int writeSequence(byte[] src, int lit, int litLen, int offset, int matchLen,
+    byte[] dst, int op) {
+  int m = matchLen == 0 ? 0 : matchLen - MIN_MATCH;
+  dst[op++] = (byte)(Math.min(litLen, 15) << 4 | Math.min(m, 15));
+  if (litLen >= 15) op = writeLength(litLen - 15, dst, op);
+  System.arraycopy(src, lit, dst, op, litLen);
+  op += litLen;
+  if (matchLen == 0) return op;
+  dst[op++] = (byte)offset;
+  dst[op++] = (byte)(offset >>> 8);
+  if (m >= 15) op = writeLength(m - 15, dst, op);
+  return op;
+}
+
+
+/**
+ * It compresses src[0 .. n - 1] into dst, which must hold at least maxPacked(n) bytes.
+ *
+ * @return The length of the compressed block.
+ */
+static int pack(byte[] src, int n, byte[] dst, int[] table) {
+  int h, ref, len, ip = 0, anchor = 0, op = 0, v;
+  int limit = n - LAST_LITERALS - MIN_MATCH;
+  Arrays.fill(table, -1);
+  while (ip < limit) {
+    v = readInt(src, ip);
+    h = (v * -1640531535) >>> (32 - HASH_BITS);
+    ref = table[h];
+    table[h] = ip;
+    if (ref < 0 || ip - ref > MAX_OFFSET || readInt(src, ref) != v) {
+      ip++;
+      continue;
+    }
+    for (len = MIN_MATCH; ip + len < n - LAST_LITERALS && src[ref + len] == src[ip + len]; len++);
+    op = writeSequence(src, anchor, ip - anchor, ip - ref, len, dst, op);
+    ip += len;
+    anchor = ip;
+  }
+  return writeSequence(src, anchor, n - anchor, 0, 0, dst, op);
+}
+
+
+static int maxPacked(int n) {
+  return n + n / 255 + 16;
+}
+
+
+// it reads a length which did not fit its 4 bits in the token
+private static int readLength(byte[] src, int[] ip) {
+  int b, res = 0;
+  do {
+    b = src[ip[0]++] & 0xff;
+    res += b;
+  } while (b == 255);
+  return res;
+}
+
+
+/**
+ * It decompresses src[0 .. len - 1] into dst, which must then hold exactly n bytes.
+ */
+static void unpack(byte[] src, int len, byte[] dst, int n) throws IOException {
+  int token, l, m, offset, ref, op = 0;
+  int[] ip = {0};
+  try {
+    while (true) {
+      token = src[ip[0]++] & 0xff;
+      l = token >>> 4;
+      if (l == 15) l += readLength(src, ip);
+      System.arraycopy(src, ip[0], dst, op, l);
+      ip[0] += l;
+      op += l;
+      if (ip[0] >= len) break; // the last sequence has literals only
+      offset = (src[ip[0]] & 0xff) | (src[ip[0] + 1] & 0xff) << 8;
+      ip[0] += 2;
+      m = token & 15;
+      if (m == 15) m += readLength(src, ip);
+      m += MIN_MATCH;
+      ref = op - offset;
+      if (offset == 0 || ref < 0) throw new IOException("DumpCodec : ERROR : corrupted block.");
+      if (offset >= m) {
+        System.arraycopy(dst, ref, dst, op, m);
+        op += m;
+      } else { // overlapping match: repeat the last offset bytes
+        for (; m > 0; m--)
+          dst[op++] = dst[ref++];
+      }
+    }
+  } catch (IndexOutOfBoundsException e) {
+    throw new IOException("DumpCodec : ERROR : corrupted block.");
+  }
+  if (op != n || ip[0] != len) throw new IOException("DumpCodec : ERROR : corrupted block.");
+}
+
+
+/**
+ * Stream of blocks, each made of its raw length, its packed length and its packed bytes (the raw
+ * bytes themselves if they do not shrink). A raw length of 0 ends the stream. flush() does nothing,
+ * since ObjectOutputStream flushes far too often for a block codec: a block is written when it is
+ * full and on close.
+ */
+private static class FastOutputStream extends FilterOutputStream {
+
+private byte[] buf = new byte[BLOCK];
+private byte[] packed = new byte[maxPacked(BLOCK)];
+private int[] table = new int[1 << HASH_BITS];
+private int size = 0;
+private DataOutputStream dout;
+
+
+FastOutputStream(OutputStream out) {
+  super(out);
+  dout = new DataOutputStream(out);
+}
+
+
+private void writeBlock() throws IOException {
+  if (size == 0) return;
+  int p = pack(buf, size, packed, table);
+  dout.writeInt(size);
+  if (p < size) {
+    dout.writeInt(p);
+    dout.write(packed, 0, p);
+  } else {
+    dout.writeInt(size);
+    dout.write(buf, 0, size);
+  }
+  size = 0;
+}
+
+
+@Override
+public void write(int b) throws IOException {
+  if (size == BLOCK) writeBlock();
+  buf[size++] = (byte)b;
+}
+
+
+@Override
+public void write(byte[] b, int off, int len) throws IOException {
+  int k;
+  while (len > 0) {
+    if (size == BLOCK) writeBlock();
+    k = Math.min(len, BLOCK - size);
+    System.arraycopy(b, off, buf, size, k);
+    size += k;
+    off += k;
+    len -= k;
+  }
+}
+
+
+@Override
+public void flush() {}
+
+
+@Override
+public void close() throws IOException {
+  writeBlock();
+  dout.writeInt(0);
+  dout.flush();
+  out.close();
+}
+
+}
+
+
+private static class FastInputStream extends InputStream {
+
+private DataInputStream din;
+private byte[] buf = new byte[BLOCK];
+private byte[] packed = new byte[maxPacked(BLOCK)];
+private int size = 0;
+private int pos = 0;
+private boolean done = false;
+
+
+FastInputStream(InputStream in) {
+  din = new DataInputStream(in);
+}
+
+
+// false at the end of the stream
+private boolean readBlock() throws IOException {
+  int n, p;
+  if (done) return false;
+  try {
+    n = din.readInt();
+    if (n == 0) {
+      done = true;
+      return false;
+    }
+    p = din.readInt();
+    if (n < 0 || n > BLOCK || p < 0 || p > n)
+      throw new IOException("DumpCodec : ERROR : corrupted block header.");
+    if (p == n) {
+      din.readFully(buf, 0, n);
+    } else {
+      din.readFully(packed, 0, p);
+      unpack(packed, p, buf, n);
+    }
+  } catch (EOFException e) {
+    throw new IOException("DumpCodec : ERROR : truncated dump.");
+  }
+  size = n;
+  pos = 0;
+  return true;
+}
+
+
+@Override
+public int read() throws IOException {
+  if (pos == size && !readBlock()) return -1;
+  return buf[pos++] & 0xff;
+}
+
+
+@Override
+public int read(byte[] b, int off, int len) throws IOException {
+  if (len == 0) return 0;
+  if (pos == size && !readBlock()) return -1;
+  len = Math.min(len, size - pos);
+  System.arraycopy(buf, pos, b, off, len);
+  pos += len;
+  return len;
+}
+
+
+@Override
+public int available() {
+  return size - pos;
+}
+
+
+@Override
+public void close() throws IOException {
+  din.close();
+}
+
+}
+
+
+/**
+ * Benchmark of the codecs over existing dumps (.gm or .feat): for each dump and codec, it prints
+ * the size of the re-encoded dump and the average time taken to write it and to load it.<br>
+ * Usage: java -cp <bin-dir>:<lib-dir> gitworks.DumpCodec [-n <runs>] <dump file>+
+ */
+public static void main(String[] args) throws Exception {
+  int c, r, runs = 5, first = 0;
+  long t, tw, tr;
+  Externalizable o;
+  File tmp;
+  if (args.length > 1 && args[0].equals("-n")) {
+    runs = Integer.parseInt(args[1]);
+    first = 2;
+  }
+  if (args.length <= first) {
+    System.err.println("Usage: java gitworks.DumpCodec [-n <runs>] <dump file>+");
+    System.exit(2);
+  }
+  for (int a = first; a < args.length; a++) {
+    o = args[a].endsWith(".feat") ? new Features() : new GitMiner();
+    GitWorks.importData(o, args[a]);
+    System.out.println(args[a] + " (" + new File(args[a]).length() + " bytes)");
+    for (c = 0; c < names.length; c++) {
+      tmp = File.createTempFile("dump", "." + names[c]);
+      tw = tr = 0L;
+      for (r = 0; r < runs; r++) {
+        t = System.nanoTime();
+        GitWorks.exportData(o, tmp.getPath(), c);
+        tw += System.nanoTime() - t;
+        t = System.nanoTime();
+        GitWorks.importData(args[a].endsWith(".feat") ? new Features() : new GitMiner(),
+            tmp.getPath());
+        tr += System.nanoTime() - t;
+      }
+      System.out.println("\t" + names[c] + "\t" + tmp.length() + " bytes\twrite "
+          + tw / runs / 1000000 + " ms\tload " + tr / runs / 1000000 + " ms");
+      tmp.delete();
+    }
+  }
+}
+
+}
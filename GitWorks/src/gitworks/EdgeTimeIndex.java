@@ -0,0 +1,172 @@
+package gitworks;
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+
+/**
+ * Index of the committing times of a dag's metaedges, for time slicing. Edges are referred to by
+ * their position in the (ID-sorted) list they were indexed from. The edges whose first or last
+ * commit falls in a window are found by binary search over the edges sorted by either time; the
+ * edges spanning the whole window (first before it, last after it) are found in a max-tree of the
+ * last times over the edges sorted by first time. Times of the internal commits are stored in flat
+ * arrays, along with their running minimum (from the last commit backwards) and maximum (from the
+ * first commit onwards), so that the internal commit where an edge enters or leaves a window is
+ * found by binary search.
+ */
+class EdgeTimeIndex {
+
+private long[] firstTime; // for each edge, time of its first commit
+private long[] lastTime; // for each edge, time of its last commit
+private int[] byFirst; // edges sorted by firstTime
+private int[] byLast; // edges sorted by lastTime
+private long[] sortedFirst; // firstTime[byFirst[i]]
+private long[] sortedLast; // lastTime[byLast[i]]
+private long[] maxLast; // max-tree (heap layout) of lastTime over byFirst
+private int leaves; // number of leaves of maxLast
+
+// times of the internal commits of edge k are internalTime[internalStart[k] .. internalStart[k + 1] - 1]
+private int[] internalStart;
+private long[] internalTime;
+private long[] minUpTo; // minimum of the internal times of the same edge up to this one
+private long[] maxFrom; // maximum of the internal times of the same edge from this one on
+
+
+EdgeTimeIndex(ArrayList<MetaEdge> edges) {
+  int i, k, m = edges.size(), tot = 0;
+  MetaEdge me;
+  firstTime = new long[m];
+  lastTime = new long[m];
+  internalStart = new int[m + 1];
+  for (k = 0; k < m; k++) {
+    me = edges.get(k);
+    firstTime[k] = me.first.getCommitTime();
+    lastTime[k] = me.last.getCommitTime();
+    tot += me.getWeight();
+    internalStart[k + 1] = tot;
+  }
+  internalTime = new long[tot];
+  minUpTo = new long[tot];
+  maxFrom = new long[tot];
+  for (k = 0; k < m; k++) {
+    me = edges.get(k);
+    for (i = 0; i < me.getWeight(); i++) {
+      internalTime[internalStart[k] + i] = me.getInternals().get(i).getCommitTime();
+      minUpTo[internalStart[k] + i] = i == 0 ? internalTime[internalStart[k]]
+          : Math.min(minUpTo[internalStart[k] + i - 1], internalTime[internalStart[k] + i]);
+    }
+    for (i = me.getWeight() - 1; i >= 0; i--)
+      maxFrom[internalStart[k] + i] = i == me.getWeight() - 1 ? internalTime[internalStart[k] + i]
+          : Math.max(maxFrom[internalStart[k] + i + 1], internalTime[internalStart[k] + i]);
+  }
+  byFirst = IndexedSortable.sortedPermutation(firstTime, false);
+  byLast = IndexedSortable.sortedPermutation(lastTime, false);
+  sortedFirst = new long[m];
+  sortedLast = new long[m];
+  for (i = 0; i < m; i++) {
+    sortedFirst[i] = firstTime[byFirst[i]];
+    sortedLast[i] = lastTime[byLast[i]];
+  }
+  for (leaves = 1; leaves < m; leaves <<= 1);
+  maxLast = new long[2 * leaves];
+  Arrays.fill(maxLast, Long.MIN_VALUE);
+  for (i = 0; i < m; i++)
+    maxLast[leaves + i] = lastTime[byFirst[i]];
+  for (i = leaves - 1; i > 0; i--)
+    maxLast[i] = Math.max(maxLast[2 * i], maxLast[2 * i + 1]);
+}
+
+
+// index of the first element of a which is >= v (or > v, if strict)
+private static int lowerBound(long[] a, long v, boolean strict) {
+  int lo = 0, hi = a.length, mid;
+  while (lo < hi) {
+    mid = (lo + hi) >>> 1;
+    if (a[mid] < v || (strict && a[mid] == v)) lo = mid + 1;
+    else hi = mid;
+  }
+  return lo;
+}
+
+
+// adds to res the edges in byFirst[0 .. end - 1] whose last commit is later than max
+private int spanning(int node, int lo, int hi, int end, long max, int[] res, int size) {
+  if (lo >= end || maxLast[node] <= max) return size;
+  if (node >= leaves) {
+    res[size++] = byFirst[lo];
+    return size;
+  }
+  int mid = (lo + hi) >>> 1;
+  size = spanning(2 * node, lo, mid, end, max, res, size);
+  return spanning(2 * node + 1, mid, hi, end, max, res, size);
+}
+
+
+/**
+ * @return The positions (ascending, thus in ID order) of all edges which either have their first or
+ *         last commit in [min, max] or have their first commit before min and their last commit
+ *         after max.
+ */
+int[] query(long min, long max) {
+  int f0 = lowerBound(sortedFirst, min, false), f1 = lowerBound(sortedFirst, max, true);
+  int l0 = lowerBound(sortedLast, min, false), l1 = lowerBound(sortedLast, max, true);
+  int i, size = 0, n = 0;
+  int[] res = new int[Math.max(f1 - f0, 0) + Math.max(l1 - l0, 0) + f0];
+  for (i = f0; i < f1; i++)
+    res[size++] = byFirst[i];
+  for (i = l0; i < l1; i++)
+    res[size++] = byLast[i];
+  size = spanning(1, 0, leaves, f0, max, res, size);
+  Arrays.sort(res, 0, size);
+  for (i = 0; i < size; i++) // an edge may be found both by first and by last time
+    if (n == 0 || res[i] != res[n - 1]) res[n++] = res[i];
+  return Arrays.copyOf(res, n);
+}
+
+
+long getFirstTime(int k) {
+  return firstTime[k];
+}
+
+
+long getLastTime(int k) {
+  return lastTime[k];
+}
+
+
+long getInternalTime(int k, int i) {
+  return internalTime[internalStart[k] + i];
+}
+
+
+/**
+ * @return The greatest index of an internal commit of edge k committed at or after min, or -1.
+ */
+int lastInternalFrom(int k, long min) {
+  int lo = internalStart[k], hi = internalStart[k + 1], mid;
+  // maxFrom is non-increasing: find the last position where it is >= min
+  while (lo < hi) {
+    mid = (lo + hi) >>> 1;
+    if (maxFrom[mid] >= min) lo = mid + 1;
+    else hi = mid;
+  }
+  return lo - 1 - internalStart[k];
+}
+
+
+/**
+ * @return The smallest index of an internal commit of edge k committed at or before max, or -1.
+ */
+int firstInternalUpTo(int k, long max) {
+  int lo = internalStart[k], hi = internalStart[k + 1], mid;
+  // minUpTo is non-increasing: find the first position where it is <= max
+  while (lo < hi) {
+    mid = (lo + hi) >>> 1;
+    if (minUpTo[mid] > max) lo = mid + 1;
+    else hi = mid;
+  }
+  return lo == internalStart[k + 1] ? -1 : lo - internalStart[k];
+}
+
+}
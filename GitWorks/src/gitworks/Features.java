@@ -10,14 +10,15 @@ import java.io.ObjectOutput;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Date;
 import java.util.Iterator;
 
-import org.eclipse.jgit.lib.PersonIdent;
 
 
 public class Features implements Comparable<Object>, Externalizable {
 
+// first int of the dumps where commit memberships are written as bitmaps
+private static final int BITMAP_DUMP = -2;
+
 /**
  * The name of the root fork identifies the Features instance
  */
@@ -36,7 +37,7 @@ int[][][] authorsImpactPerF;
 /**
  * For each fork, the indexes of the commits in it
  */
-int[][] forkCommit;
+IntBitmap[] forkCommit;
 
 /**
  * For each commit, the meaningful forks it is in
@@ -187,14 +188,24 @@ public static enum CommitRank {
 public int[] commitRank;
 
 /**
- * For each fork : for each rank, the sorted list of commits belonging to that rank
+ * For each fork : for each rank, the commits belonging to that rank
+ */
+IntBitmap[][] iCommitForF;
+
+/**
+ * For each fork : for each rank, the authors of commits belonging to that rank
  */
-ArrayList<Integer>[][] iCommitForF;
+IntBitmap[][] iAuthorForF;
 
 /**
- * For each fork : for each rank, the sorted list of authors of commits belonging to that rank
+ * For each rank, the commits belonging to it
  */
-ArrayList<Integer>[][] iAuthorForF;
+IntBitmap[] rankCommits;
+
+/**
+ * For each rank, the authors of commits belonging to it
+ */
+IntBitmap[] rankAuthors;
 
 /**
  * For each ranking (+1), how many commits are ranked like that (normalized)
@@ -219,18 +230,20 @@ public int[] extendedTimeLines;
 /**
  * For each rank, matrix of the graph that models common commits among forks
  */
-ArrayList<Integer>[][][] cLinkMap;
+ForkLinkMap cLinkMap;
 
 /**
  * For each rank, matrix of the graph that models authors of common commits among forks
  */
-ArrayList<Integer>[][][] aLinkMap;
+ForkLinkMap aLinkMap;
 
 
 void deleteExtra() {
   commitRank = null;
   iCommitForF = null;
   iAuthorForF = null;
+  rankCommits = null;
+  rankAuthors = null;
   commitRankRatio = null;
   authorRankRatio = null;
   aggregateTimeLines = null;
@@ -240,31 +253,25 @@ void deleteExtra() {
 }
 
 
-@SuppressWarnings({"unchecked"})
 void computeExtra() {
   if (commitRank != null) return;
   commitRank = new int[acCommitDiffusion.length];
-  iCommitForF = new ArrayList[allForks.length][CommitRank.values().length];
-  iAuthorForF = new ArrayList[allForks.length][CommitRank.values().length];
+  iCommitForF = new IntBitmap[allForks.length][CommitRank.values().length];
+  iAuthorForF = new IntBitmap[allForks.length][CommitRank.values().length];
+  rankCommits = new IntBitmap[CommitRank.values().length];
+  rankAuthors = new IntBitmap[CommitRank.values().length];
   commitRankRatio = new double[CommitRank.values().length];
   authorRankRatio = new double[CommitRank.values().length];
-  cLinkMap = new ArrayList[CommitRank.values().length][][];
-  aLinkMap = new ArrayList[CommitRank.values().length][][];
-  ArrayList<Integer>[] authorsInRank = new ArrayList[CommitRank.values().length];
+  cLinkMap = new ForkLinkMap(CommitRank.values().length, allForks.length);
+  aLinkMap = new ForkLinkMap(CommitRank.values().length, allForks.length);
   int i, k;
-  for (i = 0; i < authorsInRank.length; i++)
-    authorsInRank[i] = new ArrayList<Integer>();
 
   for (int q = 0; q < CommitRank.values().length; q++) {
-    cLinkMap[q] = new ArrayList[allForks.length][allForks.length];
-    aLinkMap[q] = new ArrayList[allForks.length][allForks.length];
+    rankCommits[q] = new IntBitmap();
+    rankAuthors[q] = new IntBitmap();
     for (i = 0; i < allForks.length; i++) {
-      iCommitForF[i][q] = new ArrayList<Integer>();
-      iAuthorForF[i][q] = new ArrayList<Integer>();
-      for (k = 0; k < allForks.length; k++) {
-        cLinkMap[q][i][k] = new ArrayList<Integer>();
-        aLinkMap[q][i][k] = new ArrayList<Integer>();
-      }
+      iCommitForF[i][q] = new IntBitmap();
+      iAuthorForF[i][q] = new IntBitmap();
     }
   }
   Arrays.fill(commitRankRatio, 0.0);
@@ -295,28 +302,36 @@ void computeExtra() {
     }
 
     for (k = 0; k < iForkForC[i].length; k++) {
-      GitWorks.addUnique(iCommitForF[iForkForC[i][k]][commitRank[i] + 1], i);
-      GitWorks.addUnique(iAuthorForF[iForkForC[i][k]][commitRank[i] + 1], commitAuthor[i]);
+      iCommitForF[iForkForC[i][k]][commitRank[i] + 1].add(i);
+      iAuthorForF[iForkForC[i][k]][commitRank[i] + 1].add(commitAuthor[i]);
       for (int kk = k + 1; kk < iForkForC[i].length; kk++) {
-        GitWorks.addUnique(cLinkMap[commitRank[i] + 1][iForkForC[i][k]][iForkForC[i][kk]], i);
-        GitWorks.addUnique(cLinkMap[commitRank[i] + 1][iForkForC[i][kk]][iForkForC[i][k]], i);
-        GitWorks.addUnique(aLinkMap[commitRank[i] + 1][iForkForC[i][k]][iForkForC[i][kk]],
-            commitAuthor[i]);
-        GitWorks.addUnique(aLinkMap[commitRank[i] + 1][iForkForC[i][kk]][iForkForC[i][k]],
-            commitAuthor[i]);
+        cLinkMap.add(commitRank[i] + 1, iForkForC[i][k], iForkForC[i][kk], i);
+        aLinkMap.add(commitRank[i] + 1, iForkForC[i][k], iForkForC[i][kk], commitAuthor[i]);
       }
     }
 
     commitRankRatio[commitRank[i] + 1]++;
-    GitWorks.addUnique(authorsInRank[commitRank[i] + 1], commitAuthor[i]);
+    rankCommits[commitRank[i] + 1].add(i);
+    rankAuthors[commitRank[i] + 1].add(commitAuthor[i]);
   }
 
+  for (int q = 0; q < CommitRank.values().length; q++) {
+    rankCommits[q].trimToSize();
+    rankAuthors[q].trimToSize();
+    for (i = 0; i < allForks.length; i++) {
+      iCommitForF[i][q].trimToSize();
+      iAuthorForF[i][q].trimToSize();
+    }
+  }
+  cLinkMap.trimToSize();
+  aLinkMap.trimToSize();
+
   for (i = 0; i < commitRankRatio.length; i++) {
     commitRankRatio[i] /= acCommitDiffusion.length;
   }
 
   for (i = 0; i < authorRankRatio.length; i++) {
-    authorRankRatio[i] = (1.0 * authorsInRank[i].size()) / allAuthors.length;
+    authorRankRatio[i] = (1.0 * rankAuthors[i].cardinality()) / allAuthors.length;
   }
 
   computeTimeLines();
@@ -353,7 +368,7 @@ public int getRootIndex() {
 
 
 public int[] getForkCommits(int fIndex) {
-  return forkCommit[fIndex];
+  return forkCommit[fIndex].toArray();
 }
 
 
@@ -361,7 +376,6 @@ public int[] getForkCommits(int fIndex) {
 void setFeatures(ForkList fl, ForkEntry fe, GitMiner gm) {
   int j, i = 0;
   PersonFrequency p;
-  PersonIdent pi;
   ArrayList <PersonFrequency> ap;
   Iterator<PersonFrequency> pIt;
   Iterator<Commit> cIt;
@@ -387,17 +401,19 @@ void setFeatures(ForkList fl, ForkEntry fe, GitMiner gm) {
   acAuthorsOfF = new int[allForks.length];
   since = new long[allForks.length];
   until = new long[allForks.length];
-  forkCommit = new int[allForks.length][];
+  forkCommit = new IntBitmap[allForks.length];
 
   for (Person pe : gm.allAuthors) {
     allAuthors[i++] = pe.getUniqueID();
   }
   i = 0;
   ForkEntry f2;
-  for (String f : allForks) {
-    f2 = GitWorks.getElement(fl, f.replaceFirst(GitWorks.safe_sep, GitWorks.id_sep));
-    since[i] = f2.getCreationTimestamp();
-    until[i++] = f2.getRetrievalTimestamp();
+  synchronized (fl) { // other fork trees may be purging the same list meanwhile
+    for (String f : allForks) {
+      f2 = GitWorks.getElement(fl, f.replaceFirst(GitWorks.safe_sep, GitWorks.id_sep));
+      since[i] = f2.getCreationTimestamp();
+      until[i++] = f2.getRetrievalTimestamp();
+    }
   }
   brAlIt = gm.branches.values().iterator();
   i = 0;
@@ -424,7 +440,7 @@ void setFeatures(ForkList fl, ForkEntry fe, GitMiner gm) {
 
   cIt = gm.allCommits.iterator();
   i = 0;
-  int acRes, fIndex, k;
+  int acRes, fIndex;
   boolean inRoot;
   Commit co;
   ArrayList<String> repos;
@@ -432,8 +448,8 @@ void setFeatures(ForkList fl, ForkEntry fe, GitMiner gm) {
   while (cIt.hasNext()) {
     co = cIt.next();
     acRes = 0;
-    commitAuthor[i] = Collections.binarySearch(gm.allAuthors, co.getAuthoringInfo());
-    commitTimeLine[i] = co.getCommittingInfo().getWhen().getTime();
+    commitAuthor[i] = co.getAuthorId();
+    commitTimeLine[i] = co.getCommitTime();
     repos = co.getRepos();
     inRoot = Collections.binarySearch(repos, allForks[rootIndex]) >= 0;
 
@@ -469,34 +485,31 @@ void setFeatures(ForkList fl, ForkEntry fe, GitMiner gm) {
   Arrays.fill(uAuthorsOfF, 0);
   Arrays.fill(acCommitsOfF, 0);
   Arrays.fill(acAuthorsOfF, 0);
-  String uF[] = null; Date fDate;
+  String uF[] = null;
   int authorsHere[] = new int[gm.allAuthors.size()];
   if (gm.comOnlyInF != null)
     uF = gm.comOnlyInF.keySet().toArray(new String[0]);
 
   for(i = 0, j = 0; i < allForks.length; i++) {
-    fDate = new Date(since[i]);
     ca = gm.comInF.get(allForks[i]);
     commitsOfF[i] = ca.size();
     authorsOfF[i] = gm.authOfComInF.get(allForks[i]).size();
-    forkCommit[i] = new int[ca.size()];
+    forkCommit[i] = new IntBitmap();
     Arrays.fill(authorsHere, 0);
     cIt = ca.iterator();
-    k = 0;
     while (cIt.hasNext()) {
       c = cIt.next();
-      pi = c.getCommittingInfo();
-      if (pi.getWhen().after(fDate)) {
-        pi = c.getAuthoringInfo();
-        indx = Collections.binarySearch(gm.allAuthors, pi);
+      if (c.getCommitTime() > since[i]) {
+        indx = c.getAuthorId();
         authorsHere[indx]++;
         if (authorsHere[indx] == 1) {
           acAuthorsOfF[i]++;
         }
         acCommitsOfF[i]++;
       }
-      forkCommit[i][k++] = Collections.binarySearch(gm.allCommits, c);
+      forkCommit[i].add(gm.commitIndex.indexOf(c.id));
     }
+    forkCommit[i].trimToSize();
     if (uF != null && j < uF.length && allForks[i].equals(uF[j])) {
       ca = gm.comOnlyInF.get(uF[j]);
       uCommitsOfF[i] = ca.size();
@@ -536,7 +549,12 @@ public String toString() {
 @Override
 public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
   int j, i, authors, size;
+  boolean bitmaps = false;
   size = in.readInt();
+  if (size == BITMAP_DUMP) { // older dumps start with the number of forks
+    bitmaps = true;
+    size = in.readInt();
+  }
   authors = in.readInt();
   authorsImpactPerF = new int[authors][size][2];
   allAuthors = new String[authors];
@@ -550,7 +568,7 @@ public void readExternal(ObjectInput in) throws IOException, ClassNotFoundExcept
   since = new long[size];
   until = new long[size];
   branchesOfF = new int[size];
-  forkCommit = new int[size][];
+  forkCommit = new IntBitmap[size];
   for (i = 0; i < size; i++) {
     allForks[i] = in.readUTF();
     since[i] = in.readLong();
@@ -580,6 +598,7 @@ public void readExternal(ObjectInput in) throws IOException, ClassNotFoundExcept
     acCommitDiffusion[i] = in.readInt();
     commitAuthor[i] = in.readInt();
     commitTimeLine[i] = in.readLong();
+    if (bitmaps) continue;
     iForkForC[i] = new int[in.readInt()];
     for (j = 0; j < iForkForC[i].length; j++) {
       iForkForC[i][j] = in.readInt();
@@ -592,11 +611,18 @@ public void readExternal(ObjectInput in) throws IOException, ClassNotFoundExcept
   for (i = 0; i < authors; i++) {
     allAuthors[i] = in.readUTF();
   }
-  for (i = 0; i < allForks.length; i++) {
-    size = in.readInt();
-    forkCommit[i] = new int[size];
-    for (j = 0; j < size; j++) {
-      forkCommit[i][j] = in.readInt();
+  if (bitmaps) {
+    for (i = 0; i < allForks.length; i++)
+      forkCommit[i] = IntBitmap.readExternal(in);
+    readForksForC(in);
+  } else {
+    for (i = 0; i < allForks.length; i++) {
+      size = in.readInt();
+      forkCommit[i] = new IntBitmap();
+      for (j = 0; j < size; j++) {
+        forkCommit[i].add(in.readInt());
+      }
+      forkCommit[i].trimToSize();
     }
   }
   nCommits = in.readInt();
@@ -609,8 +635,41 @@ public void readExternal(ObjectInput in) throws IOException, ClassNotFoundExcept
 }
 
 
+// iForkForC, written by fork: for each, the commits it is meaningful for
+private void writeForksForC(ObjectOutput out) throws IOException {
+  IntBitmap[] commits = new IntBitmap[allForks.length];
+  for (int i = 0; i < commits.length; i++)
+    commits[i] = new IntBitmap();
+  for (int c = 0; c < iForkForC.length; c++)
+    for (int f : iForkForC[c])
+      commits[f].add(c);
+  for (IntBitmap b : commits)
+    b.writeExternal(out);
+}
+
+
+private void readForksForC(ObjectInput in) throws IOException {
+  int[][] commits = new int[allForks.length][];
+  int[] n = new int[iForkForC.length];
+  int f, c;
+  for (f = 0; f < commits.length; f++) {
+    commits[f] = IntBitmap.readExternal(in).toArray();
+    for (int cc : commits[f])
+      n[cc]++;
+  }
+  for (c = 0; c < iForkForC.length; c++) {
+    iForkForC[c] = new int[n[c]];
+    n[c] = 0;
+  }
+  for (f = 0; f < commits.length; f++) // forks in ascending order, as setFeatures() puts them
+    for (int cc : commits[f])
+      iForkForC[cc][n[cc]++] = f;
+}
+
+
 @Override
 public void writeExternal(ObjectOutput out) throws IOException {
+  out.writeInt(BITMAP_DUMP);
   out.writeInt(allForks.length);
   out.writeInt(allAuthors.length);
   for (int i = 0; i < allForks.length; i++) {
@@ -636,10 +695,6 @@ public void writeExternal(ObjectOutput out) throws IOException {
     out.writeInt(acCommitDiffusion[d]);
     out.writeInt(commitAuthor[d]);
     out.writeLong(commitTimeLine[d]);
-    out.writeInt(iForkForC[d].length);
-    for (int i = 0; i < iForkForC[d].length; i++) {
-      out.writeInt(iForkForC[d][i]);
-    }
   }
   out.writeInt(acRootCommits.length);
   for (int i = 0; i < acRootCommits.length; i++) {
@@ -649,11 +704,9 @@ public void writeExternal(ObjectOutput out) throws IOException {
     out.writeUTF(allAuthors[i]);
   }
   for (int i = 0; i < forkCommit.length; i++) {
-    out.writeInt(forkCommit[i].length);
-    for (int j = 0; j < forkCommit[i].length; j++) {
-      out.writeInt(forkCommit[i][j]);
-    }
+    forkCommit[i].writeExternal(out);
   }
+  writeForksForC(out);
   out.writeInt(nCommits);
   out.writeInt(nWatchers);
   out.writeInt(totWatchers);
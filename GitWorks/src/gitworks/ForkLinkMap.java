@@ -0,0 +1,78 @@
+package gitworks;
+
+
+import java.util.HashMap;
+
+
+/**
+ * For each commit rank, the sparse and symmetric matrix of the graph that links forks sharing some
+ * commits: each link holds the set of ids (commits or authors) that the two forks share. Only the
+ * pairs of forks that actually share something take any memory.
+ */
+class ForkLinkMap {
+
+private int forks;
+private HashMap<Long, SortedIntSet>[] links; // for each rank, the sets by pair of forks (see key())
+
+
+@SuppressWarnings({ "rawtypes", "unchecked" })
+ForkLinkMap(int ranks, int forks) {
+  this.forks = forks;
+  links = new HashMap[ranks];
+  for (int i = 0; i < ranks; i++)
+    links[i] = new HashMap<Long, SortedIntSet>();
+}
+
+
+// the same for (f1, f2) and (f2, f1)
+private long key(int f1, int f2) {
+  return f1 < f2 ? (long)f1 * forks + f2 : (long)f2 * forks + f1;
+}
+
+
+/**
+ * It adds id to the ones shared by forks f1 and f2 in the given rank.
+ */
+void add(int rank, int f1, int f2, int id) {
+  Long k = key(f1, f2);
+  SortedIntSet s = links[rank].get(k);
+  if (s == null) {
+    s = new SortedIntSet();
+    links[rank].put(k, s);
+  }
+  s.add(id);
+}
+
+
+/**
+ * @return The ids shared by forks f1 and f2 in the given rank, or null if there is none.
+ */
+SortedIntSet get(int rank, int f1, int f2) {
+  return links[rank].get(key(f1, f2));
+}
+
+
+/**
+ * @return The number of ids shared by forks f1 and f2 in the given rank.
+ */
+int size(int rank, int f1, int f2) {
+  SortedIntSet s = get(rank, f1, f2);
+  return s == null ? 0 : s.size();
+}
+
+
+/**
+ * @return The number of pairs of forks sharing something in the given rank.
+ */
+int getNumLinks(int rank) {
+  return links[rank].size();
+}
+
+
+void trimToSize() {
+  for (HashMap<Long, SortedIntSet> l : links)
+    for (SortedIntSet s : l.values())
+      s.trimToSize();
+}
+
+}
@@ -9,29 +9,37 @@ import java.io.ObjectInput;
 import java.io.ObjectOutput;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.Iterator;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.eclipse.jgit.util.FileUtils;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.ListBranchCommand.ListMode;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.api.errors.NoHeadException;
-import org.eclipse.jgit.errors.IncorrectObjectTypeException;
-import org.eclipse.jgit.errors.MissingObjectException;
 import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefUpdate;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.lib.StoredConfig;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevFlag;
 import org.eclipse.jgit.revwalk.RevSort;
 import org.eclipse.jgit.revwalk.RevWalk;
-import org.eclipse.jgit.revwalk.filter.CommitTimeRevFilter;
 import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
 import org.eclipse.jgit.transport.RefSpec;
 
@@ -86,6 +94,8 @@ LinkedHashMap<String, ArrayList<PersonFrequency>> authOfComOnlyInF = null;
 LinkedHashMap<Commit, ArrayList<PersonFrequency>> authOfComInB = null;
 LinkedHashMap<Commit, ArrayList<PersonFrequency>> authOfComOnlyInB = null;
 ArrayList<Commit> allCommits = null;
+CommitIndex commitIndex = null; // SHA-1 lookup of allCommits: the id of a commit is its position
+CommitTable commitTable = null; // pre-parsed metadata of allCommits, by position
 ArrayList<BranchRef> allBranches = null;
 ArrayList<Person> allAuthors = null;
 MetaGraph metaGraph = null;
@@ -130,6 +140,32 @@ static DfsOperator addAsRemote = new DfsOperator() {
 };
 
 
+// this operator requires an ArrayList<ForkEntry> as parameter, which collects the visited entries
+static DfsOperator collectForks = new DfsOperator() {
+
+  public int getID() {
+    return 5;
+  }
+
+
+  public boolean runOnce() {
+    return true;
+  }
+
+
+  public void initialize(ForkEntry fe) {}
+
+
+  @SuppressWarnings("unchecked")
+  public void run(ForkEntry fe, Object arg) throws Exception {
+    ((ArrayList<ForkEntry>)arg).add(fe);
+  }
+
+
+  public void finalize(ForkEntry fe) {}
+};
+
+
 GitMiner() {}
 
 
@@ -154,8 +190,8 @@ private LinkedHashMap computePersonFreq(LinkedHashMap map) {
     values = new ArrayList<PersonFrequency>(ev.size());
     while (evit.hasNext()) {
       c = evit.next();
-      pTs = c.getCommittingInfo().getWhen().getTime();
-      i = Collections.binarySearch(allAuthors, c.getAuthoringInfo());
+      pTs = c.getCommitTime();
+      i = c.getAuthorId();
       p = new PersonFrequency(i);
       i = GitWorks.addUnique(values, p);
       p = values.get(i);
@@ -175,11 +211,152 @@ private LinkedHashMap computePersonFreq(LinkedHashMap map) {
 //add remotes to a jgit repo, using a given ForkEntry data structure
 //with a large depth param value the complete fork tree will be built
 private void addRemotes(Git git, ForkEntry project, int depth) throws Exception {
-  GitWorks.dfsVisit(depth, project, GitMiner.addAsRemote, git);
+  if (GitWorks.fetchWorkers > 1)
+    fetchRemotes(git, project, depth);
+  else
+    GitWorks.dfsVisit(depth, project, GitMiner.addAsRemote, git);
   git.getRepository().scanForRepoChanges();
 }
 
 
+// same as addRemotes, but the config is saved once for all remotes and then up to
+// GitWorks.fetchWorkers remotes are fetched at the same time. All fetches are waited for; the
+// first failure, if any, is then rethrown.
+private void fetchRemotes(final Git git, ForkEntry project, int depth) throws Exception {
+  ArrayList<ForkEntry> forks = new ArrayList<ForkEntry>();
+  GitWorks.dfsVisit(depth, project, GitMiner.collectForks, forks);
+  final String[] remotes = new String[forks.size()];
+  StoredConfig config = git.getRepository().getConfig();
+  for (int i = 0; i < remotes.length; i++) {
+    remotes[i] = GitWorks.getSafeName(forks.get(i));
+    config.setString("remote", remotes[i], "url", GitWorks.getProjectPath(forks.get(i)));
+    config.setString("remote", remotes[i], "fetch", "+refs/heads/*:refs/remotes/" + remotes[i] + "/*");
+  }
+  config.save();
+  ArrayList<Future<Long>> times = new ArrayList<Future<Long>>(remotes.length);
+  ExecutorService pool = Executors.newFixedThreadPool(Math.max(1,
+      Math.min(GitWorks.fetchWorkers, remotes.length)));
+  for (final String fork : remotes) {
+    final RefSpec all = new RefSpec(config.getString("remote", fork, "fetch"));
+    times.add(pool.submit(new Callable<Long>() {
+
+      public Long call() throws Exception {
+        long t = System.currentTimeMillis();
+        git.fetch().setRemote(fork).setRefSpecs(all).call();
+        return System.currentTimeMillis() - t;
+      }
+    }));
+  }
+  pool.shutdown();
+  Exception failure = null;
+  for (int i = 0; i < remotes.length; i++) {
+    try {
+      System.err.println("Fetched " + remotes[i] + " in " + times.get(i).get() + " ms.");
+    }
+    catch (ExecutionException e) {
+      System.err.println("ERROR : fetch of " + remotes[i] + " failed (" + e.getCause() + ").");
+      if (failure == null)
+        failure = e.getCause() instanceof Exception ? (Exception)e.getCause() : e;
+    }
+  }
+  if (failure != null) throw failure;
+}
+
+
+// umbrella mode that copies no objects: the object databases of all the forks in the tree are
+// listed as alternates of the umbrella repo and only the refs/remotes/<fork>/* refs are created,
+// i.e. the same refs that addRemotes would fetch.
+// The resulting umbrella repo can be opened only as long as the fork repos are in place.
+private void linkRemotes(Git git, ForkEntry project, int depth) throws Exception {
+  ArrayList<ForkEntry> forks = new ArrayList<ForkEntry>();
+  GitWorks.dfsVisit(depth, project, GitMiner.collectForks, forks);
+  Repository fork, umbrella = git.getRepository();
+  File alternates = new File(umbrella.getDirectory(), "objects/info/alternates");
+  alternates.getParentFile().mkdirs();
+  PrintWriter pout = new PrintWriter(new FileWriter(alternates));
+  RefUpdate ru;
+  RefUpdate.Result res;
+  String remote;
+  try {
+    for (ForkEntry fe : forks) {
+      remote = GitWorks.getSafeName(fe);
+      fork = new FileRepositoryBuilder().setGitDir(new File(GitWorks.getProjectPath(fe)))
+          .setMustExist(true).build();
+      try {
+        pout.println(new File(fork.getDirectory(), "objects").getAbsolutePath());
+        pout.flush();
+        for (Ref r : fork.getRefDatabase().getRefs(Constants.R_HEADS).values()) {
+          if (r.getObjectId() == null) continue; // unborn branch
+          ru = umbrella.updateRef(Constants.R_REMOTES + remote + "/"
+              + r.getName().substring(Constants.R_HEADS.length()));
+          ru.setNewObjectId(r.getObjectId());
+          ru.setForceUpdate(true);
+          res = ru.update();
+          if (res != RefUpdate.Result.NEW && res != RefUpdate.Result.FORCED
+              && res != RefUpdate.Result.NO_CHANGE)
+            throw new IOException("Cannot create " + ru.getName() + " (" + res + ").");
+        }
+      }
+      finally {
+        fork.close();
+      }
+    }
+  }
+  finally {
+    pout.close();
+  }
+  umbrella.scanForRepoChanges();
+}
+
+
+// it drops from a reused umbrella repo what addRemotes and linkRemotes never remove: the remotes
+// (config and refs) of the forks that are no longer in the tree, and the refs/remotes/<fork>/*
+// refs of the branches that no longer exist in their fork.
+private void pruneRemotes(Git git, ForkEntry project, int depth) throws Exception {
+  ArrayList<ForkEntry> forks = new ArrayList<ForkEntry>();
+  GitWorks.dfsVisit(depth, project, GitMiner.collectForks, forks);
+  Repository fork, umbrella = git.getRepository();
+  StoredConfig config = umbrella.getConfig();
+  HashMap<String, Set<String>> heads = new HashMap<String, Set<String>>(forks.size());
+  Set<String> live;
+  String remote, key;
+  RefUpdate ru;
+  RefUpdate.Result res;
+  boolean dirty = false;
+  for (ForkEntry fe : forks) {
+    live = new HashSet<String>();
+    fork = new FileRepositoryBuilder().setGitDir(new File(GitWorks.getProjectPath(fe)))
+        .setMustExist(true).build();
+    try {
+      for (Ref r : fork.getRefDatabase().getRefs(Constants.R_HEADS).values())
+        if (r.getObjectId() != null) live.add(r.getName().substring(Constants.R_HEADS.length()));
+    }
+    finally {
+      fork.close();
+    }
+    heads.put(GitWorks.getSafeName(fe), live);
+  }
+  for (String rm : config.getSubsections("remote"))
+    if (!heads.containsKey(rm)) {
+      config.unsetSection("remote", rm);
+      dirty = true;
+    }
+  if (dirty) config.save();
+  for (Entry<String, Ref> e : umbrella.getRefDatabase().getRefs(Constants.R_REMOTES).entrySet()) {
+    key = e.getKey(); // <remote-name>/<branch-name>
+    remote = key.substring(0, Math.max(0, key.indexOf('/')));
+    live = heads.get(remote);
+    if (live != null && live.contains(key.substring(remote.length() + 1))) continue;
+    ru = umbrella.updateRef(e.getValue().getName());
+    ru.setForceUpdate(true);
+    res = ru.delete();
+    if (res != RefUpdate.Result.FORCED && res != RefUpdate.Result.NO_CHANGE)
+      throw new IOException("Cannot delete " + ru.getName() + " (" + res + ").");
+  }
+  umbrella.scanForRepoChanges();
+}
+
+
 // printout all commit messages in a given range -> use and reset an existing RevWalk
 private void printCommits(String outFile, RevWalk walk)
     throws IOException, NoHeadException, GitAPIException {
@@ -260,11 +437,11 @@ String printRepoInfo() {
 
 
 // import a git repo in jgit data structures or create a new one
-private Repository createRepo(String repoDir, String gitDir) throws IOException {
+private Repository createRepo(String repoDir, String gitDir, boolean fresh) throws IOException {
 
   File gd = new File(gitDir);
   File rd = new File(repoDir);
-  if (GitWorks.anew) {
+  if (fresh) {
     if (rd.exists()) FileUtils.delete(rd, FileUtils.RECURSIVE);
     if (!GitWorks.bare) rd.mkdirs();
     if (gd.exists()) FileUtils.delete(gd, FileUtils.RECURSIVE);
@@ -275,43 +452,13 @@ private Repository createRepo(String repoDir, String gitDir) throws IOException
   Repository repository = frb.setGitDir(gd)
       .readEnvironment() // scan environment GIT_* variables
       .findGitDir() // scan up the file system tree
-      .setMustExist(!GitWorks.anew).build();
-  if (GitWorks.anew) repository.create(GitWorks.bare);
+      .setMustExist(!fresh).build();
+  if (fresh) repository.create(GitWorks.bare);
 
   return repository;
 }
 
 
-// the RevWalk must be reset by the caller upon return!
-private ArrayList<RevCommit> findCommits(RevWalk walk, ArrayList<RevCommit> included,
-    ArrayList<RevCommit> excluded, boolean getBody, long after) throws MissingObjectException,
-    IncorrectObjectTypeException, IOException {
-  ArrayList<RevCommit> commits = new ArrayList<RevCommit>();
-  commits.ensureCapacity(allBranches.size()); // heuristic workaround
-  walk.sort(RevSort.COMMIT_TIME_DESC, true);
-  walk.sort(RevSort.TOPO, true);
-  walk.setRetainBody(getBody);
-  if (after > 0)
-    walk.setRevFilter(CommitTimeRevFilter.after(after));
-  else
-    walk.setRevFilter(null);
-  walk.markStart(included);
-  RevCommit c;
-  Iterator<RevCommit> it = excluded.iterator();
-  while (it.hasNext()) {
-    walk.markUninteresting(it.next());
-  }
-  it = walk.iterator();
-  while (it.hasNext()) {
-    c = it.next();
-    if (getBody) walk.parseBody(c);
-    // addUnique(commits, c); // commits are naturally ordered by SHA-1
-    commits.add(c);
-  }
-  return commits.size() > 0 ? commits : null;
-}
-
-
 private BranchRef getBranchRef(int index) {
   return allBranches.get(index);
 }
@@ -369,196 +516,157 @@ private void buildBranchesMap(int size) throws GitAPIException {
 }
 
 
-// find commits that are (only?) in each remote
-private void getCommitsInR(RevWalk walk, boolean only)
-    throws MissingObjectException, IncorrectObjectTypeException, IOException {
-
-  Iterator<BranchRef> brIt;
-  LinkedHashMap<String, ArrayList<Commit>> commits;
-  ArrayList<RevCommit> comm;
-  ArrayList<RevCommit> included = new ArrayList<RevCommit>();
-  ArrayList<RevCommit> excluded = new ArrayList<RevCommit>();
-  Entry<String, ArrayList<BranchRef>> er;
-  String r;
-  Commit c;
-  ArrayList<Commit> newcos;
-  Iterator<Entry<String, ArrayList<BranchRef>>> erit;
-  Iterator<String> sit = branches.keySet().iterator();
-  commits = new LinkedHashMap<String, ArrayList<Commit>>(branches.size() / 2, 1);
-  if (only)
-    excluded.ensureCapacity(allBranches.size() - 1);
-//  int j = 0;
-  while (sit.hasNext()) {/**/// System.err.println("###### Iteration " + (++j));
-    r = sit.next();
-    erit = branches.entrySet().iterator();
-    while (erit.hasNext()) {
-      er = erit.next();
-      brIt = er.getValue().iterator();
-      if (er.getKey().equals(r)) {
-        while (brIt.hasNext()) {
-          GitWorks.addUnique(included, walk.parseCommit(brIt.next().id));
-        }
-      } else if (only) {
-        while (brIt.hasNext()) {
-          GitWorks.addUnique(excluded, walk.parseCommit(brIt.next().id));
-        }
-      }
+// find commits that are (only?) in each remote and those that are not in each remote, out of the
+// fork-level labels of a single walk
+// cos must be ordered as reach.commits
+@SuppressWarnings({ "rawtypes", "unchecked" })
+private void getCommitsInR(Reachability reach, Commit[] cos) {
+
+  int f, i, forks = branches.size();
+  BitSet fs, forkSets[];
+  String[] names = branches.keySet().toArray(new String[0]);
+  LinkedHashMap<String, Integer> forkIndex = new LinkedHashMap<String, Integer>(forks, 1);
+  ArrayList<Commit>[] inF = new ArrayList[forks];
+  ArrayList<Commit>[] onlyInF = new ArrayList[forks];
+  ArrayList<Commit>[] notInF = new ArrayList[forks];
+  int[] forkOf = new int[allBranches.size()];
+
+  for (f = 0; f < forks; f++)
+    forkIndex.put(names[f], f);
+  for (i = 0; i < forkOf.length; i++)
+    forkOf[i] = forkIndex.get(allBranches.get(i).getRepoName());
+  forkSets = reach.getForkSets(forkOf, forks);
+  for (i = 0; i < cos.length; i++) {
+    fs = forkSets[reach.labels[i]];
+    for (f = fs.nextSetBit(0); f >= 0; f = fs.nextSetBit(f + 1)) {
+      if (inF[f] == null) inF[f] = new ArrayList<Commit>();
+      inF[f].add(cos[i]);
     }
-    comm = findCommits(walk, included, excluded, false, 0);
-    if (comm != null) {
-      newcos = new ArrayList<Commit>(comm.size());
-      for (int i = 0; i < comm.size(); i++) {
-        c = GitWorks.getElement(allCommits, comm.get(i));
-        newcos.add(c);
-      }
-      commits.put(r, newcos);
+    if (fs.cardinality() == 1) {
+      f = fs.nextSetBit(0);
+      if (onlyInF[f] == null) onlyInF[f] = new ArrayList<Commit>();
+      onlyInF[f].add(cos[i]);
+    }
+    for (f = fs.nextClearBit(0); f < forks; f = fs.nextClearBit(f + 1)) {
+      if (notInF[f] == null) notInF[f] = new ArrayList<Commit>();
+      notInF[f].add(cos[i]);
     }
-    included.clear();
-    excluded.clear();
-    walk.reset();
   }
-  included.trimToSize();
-  included.ensureCapacity(50);
-  excluded.trimToSize();
-  excluded.ensureCapacity(50);
 
-  if (only)
-    comOnlyInF = commits.isEmpty() ? null : commits;
-  else
-    comInF = commits.isEmpty() ? null : commits;
+  comInF = getForkMap(names, inF);
+  comOnlyInF = getForkMap(names, onlyInF);
+  comNotInF = getForkMap(names, notInF);
 }
 
 
-// find commits that are not in a given remote
-private void getCommitsNotInR(RevWalk walk) throws MissingObjectException,
-    IncorrectObjectTypeException, IOException {
-  Iterator<BranchRef> brIt;
-  LinkedHashMap<String, ArrayList<Commit>> commits;
-  ArrayList<RevCommit> comm;
-  ArrayList<RevCommit> included = new ArrayList<RevCommit>();
-  ArrayList<RevCommit> excluded = new ArrayList<RevCommit>();
+private LinkedHashMap<String, ArrayList<Commit>> getForkMap(String[] names,
+    ArrayList<Commit>[] lists) {
+  LinkedHashMap<String, ArrayList<Commit>> res;
+  res = new LinkedHashMap<String, ArrayList<Commit>>(names.length / 2, 1);
+  for (int f = 0; f < names.length; f++) {
+    if (lists[f] == null) continue;
+    lists[f].trimToSize();
+    res.put(names[f], lists[f]);
+  }
+  return res.isEmpty() ? null : res;
+}
 
-  Entry<String, ArrayList<BranchRef>> er;
-  String r;
-  Commit c;
-  ArrayList<Commit> newcos;
-  Iterator<Entry<String, ArrayList<BranchRef>>> erit;
-  Iterator<String> sit = branches.keySet().iterator();
-  included.ensureCapacity(allBranches.size() - 1);
-  commits = new LinkedHashMap<String, ArrayList<Commit>>(branches.size() / 2, 1);
-//  int j = 0;
-  while (sit.hasNext()) {/**/// System.err.println("###### Iteration " + (++j));
-    r = sit.next();
-    erit = branches.entrySet().iterator();
-    while (erit.hasNext()) {
-      er = erit.next();
-      brIt = er.getValue().iterator();
-      if (er.getKey().equals(r)) {
-        while (brIt.hasNext()) {
-          GitWorks.addUnique(excluded, walk.parseCommit(brIt.next().id));
-        }
-      } else {
-        while (brIt.hasNext()) {
-          GitWorks.addUnique(included, walk.parseCommit(brIt.next().id));
+
+// build the allCommits and allAuthors arrays out of the commits reached by a single walk,
+// or get the already existing instances. Commits not in allCommits yet are added (their body is
+// read from repo if the walk did not retain it) and commits without branches get the ones of
+// their label.
+// the result is ordered as reach.commits
+private Commit[] getCommits(Reachability reach, Repository repo) throws IOException {
+  int b, i;
+  BitSet bs;
+  RevCommit rc;
+  RevWalk walk = null;
+  Commit co, res[] = new Commit[reach.size()];
+  int known = allCommits.size();
+  if (known == 0) allCommits.ensureCapacity(reach.size());
+  else if (commitIndex == null) {
+    commitIndex = new CommitIndex(allCommits);
+    commitTable = new CommitTable(commitIndex, allAuthors);
+  }
+  try {
+    for (i = 0; i < res.length; i++) {
+      rc = reach.commits.get(i);
+      co = known == 0 ? null : commitIndex.get(rc);
+      if (co == null) { // populate allCommits
+        if (rc.getRawBuffer() == null) { // only new commits are read
+          if (walk == null) walk = new RevWalk(repo);
+          rc = walk.parseCommit(rc);
         }
+        co = new Commit(rc);
+        allCommits.add(co);
+        GitWorks.addUnique(allAuthors, new Person(co.getAuthoringInfo()));
       }
-    }
-    comm = findCommits(walk, included, excluded, false, 0);
-    if (comm != null) {
-      newcos = new ArrayList<Commit>(comm.size());
-      for (int i = 0; i < comm.size(); i++) {
-        c = GitWorks.getElement(allCommits, comm.get(i));
-        newcos.add(c);
+      if (co.branches.isEmpty()) {
+        bs = reach.getBranches(i);
+        for (b = bs.nextSetBit(0); b >= 0; b = bs.nextSetBit(b + 1))
+          co.branches.add(allBranches.get(b)); // allBranches is sorted, so are the branches
       }
-      commits.put(r, newcos);
+      res[i] = co;
     }
-    included.clear();
-    excluded.clear();
-    walk.reset();
   }
-  included.trimToSize();
-  included.ensureCapacity(50);
-  excluded.trimToSize();
-  excluded.ensureCapacity(50);
-
-  comNotInF = commits.isEmpty() ? null : commits;
+  finally {
+    if (walk != null) walk.release();
+  }
+  if (allCommits.size() > known) {
+    Collections.sort(allCommits);
+    commitIndex = new CommitIndex(allCommits);
+    commitTable = new CommitTable(commitIndex, allAuthors);
+  }
+  for (b = 0; b < allBranches.size(); b++)
+    res[reach.headOf[b]].addHead(allBranches.get(b));
+  return res;
 }
 
 
-// fast but resource-demanding
-// find commits that are (uniquely?) in a branch
-// used to build the allCommits and allAuthors arrays as well
-private void getCommitsInB(RevWalk walk, boolean only) throws MissingObjectException,
-    IncorrectObjectTypeException, IOException {
+// find commits that are (uniquely?) in a branch, out of the labels of a single walk
+// cos must be ordered as reach.commits
+@SuppressWarnings({ "rawtypes", "unchecked" })
+private void getCommitsInB(Reachability reach, Commit[] cos, boolean only) {
 
-  int c;
-  BranchRef b;
-  Iterator<BranchRef> brIt;
+  int b, i;
+  BitSet bs;
   LinkedHashMap<Commit, ArrayList<Commit>> commits;
-  Commit newco, co;
-  Person newpe;
-  ArrayList<Commit> newcos;
-  ArrayList<RevCommit> comm;
-
-  ArrayList<RevCommit> included = new ArrayList<RevCommit>();
-  ArrayList<RevCommit> excluded = new ArrayList<RevCommit>();
-
-  ArrayList<BranchRef> temp = new ArrayList<BranchRef>();
-  if (only) {
-    temp.ensureCapacity(allBranches.size() - 1);
-    excluded.ensureCapacity(allBranches.size() - 1);
-  } else if (allCommits.size() > 0) {
-    System.err.println("GitMIner ( " + name + " -- " + id
-        + " ) ERROR : the allCommits array has already been built!");
-    return;
-  }
+  ArrayList<Commit>[] lists = new ArrayList[allBranches.size()];
+  int[] owner = new int[only ? reach.getNumLabels() : cos.length];
+
   commits = only ? new LinkedHashMap<Commit, ArrayList<Commit>>()
       : new LinkedHashMap<Commit, ArrayList<Commit>>(allBranches.size(), 1);
-  for (int i = 0; i < allBranches.size(); i++) {
-    b = allBranches.get(i);/**/// System.err.println("###### Iteration " + (i+1));
-    if (commits.containsKey(b.id)) {
-      commits.get(b.id).get(0).addHead(b);
-      continue;
+  Arrays.fill(owner, -1);
+  if (only) { // owner -> for each label, the only branch in it (if any)
+    for (i = 1; i < owner.length; i++) {
+      bs = reach.getLabel(i);
+      if (bs.cardinality() == 1) owner[i] = bs.nextSetBit(0);
     }
+  } else { // owner -> for each head, the first branch pointing to it
+    for (b = allBranches.size() - 1; b >= 0; b--)
+      owner[reach.headOf[b]] = b;
+  }
+  for (i = 0; i < cos.length; i++) {
     if (only) {
-      temp.clear();
-      if (i > 0) temp.addAll(allBranches.subList(0, i));
-      temp.addAll(allBranches.subList(i + 1, allBranches.size()));
-      brIt = temp.iterator();
-      while (brIt.hasNext()) {
-        GitWorks.addUnique(excluded, walk.parseCommit(brIt.next().id));
+      b = owner[reach.labels[i]];
+      if (b < 0) continue;
+      if (lists[b] == null) lists[b] = new ArrayList<Commit>();
+      lists[b].add(cos[i]);
+    } else {
+      bs = reach.getBranches(i);
+      for (b = bs.nextSetBit(0); b >= 0; b = bs.nextSetBit(b + 1)) {
+        if (owner[reach.headOf[b]] != b) continue; // branches with the same head share one list
+        if (lists[b] == null) lists[b] = new ArrayList<Commit>();
+        lists[b].add(cos[i]);
       }
     }
-    GitWorks.addUnique(included, walk.parseCommit(b.id));
-    comm = findCommits(walk, included, excluded, !only, 0);
-    if (comm != null) { // if only == false this is always true
-      newcos = new ArrayList<Commit>(comm.size());
-      for (int j = 0; j < comm.size(); j++) {
-        if (!only) {
-          newco = new Commit(comm.get(j)); // this RevCommit has a buffer -> populate allCommits
-          c = GitWorks.addUnique(allCommits, newco);
-          co = allCommits.get(c);
-          co.addBranch(b);
-          if (j == 0) {
-            co.addHead(b);
-          }
-          newpe = new Person(co.getAuthoringInfo());
-          GitWorks.addUnique(allAuthors, newpe);
-        } else {  // this RevCommit has no buffer
-          co = GitWorks.getElement(allCommits, comm.get(j));
-        }
-        newcos.add(co);
-      }
-      commits.put(newcos.get(0), newcos);
-    }
-    included.clear();
-    excluded.clear();
-    walk.reset();
   }
-  included.trimToSize();
-  included.ensureCapacity(50);
-  excluded.trimToSize();
-  excluded.ensureCapacity(50);
+  for (b = 0; b < lists.length; b++) {
+    if (lists[b] == null) continue;
+    lists[b].trimToSize();
+    commits.put(cos[reach.headOf[b]], lists[b]);
+  }
 
   if (only)
     comOnlyInB = commits.isEmpty() ? null : commits;
@@ -569,6 +677,13 @@ private void getCommitsInB(RevWalk walk, boolean only) throws MissingObjectExcep
 
 // sort branch heads by number of touched commit, to minimize the length of the recursive calls
 boolean buildMetaGraph() {
+  metaGraph = MetaGraph.createMetaGraph(allCommits, getSortedHeads());
+  return metaGraph.checkup();
+}
+
+
+// the heads of all branches, from the one with most commits to the one with fewest
+private ArrayList<Commit> getSortedHeads() {
   Entry<Commit, ArrayList<Commit>> e;
   Iterator<Entry<Commit, ArrayList<Commit>>> setIt = comInB.entrySet().iterator();
   int sorted[], size = comInB.keySet().size();
@@ -584,8 +699,7 @@ boolean buildMetaGraph() {
   for (int i = 0; i < size; i++) {
     sortedCommits.add(commits[sorted[i]]);
   }
-  metaGraph = MetaGraph.createMetaGraph(allCommits, sortedCommits);
-  return metaGraph.checkup();
+  return sortedCommits;
 }
 
 
@@ -629,7 +743,8 @@ String getInfo() {
 @SuppressWarnings("unchecked")
 void analyzeUmbrella(ForkEntry fe) throws Exception {
 
-  RevWalk walk = null;
+  Reachability reach;
+  Commit[] cos;
 
   String gitDirPath = GitWorks.gits_out_dir + GitWorks.getSafeName(fe)
       + ((GitWorks.bare == true) ? ".git" : "/.git");
@@ -638,28 +753,34 @@ void analyzeUmbrella(ForkEntry fe) throws Exception {
   try {
     // with git.init() it is not possible to specify a different tree path!!
     // git = Git.init().setBare(bare).setDirectory(new File(gitDirPath)).call();
-    git = Git.wrap(createRepo(treeDirPath, gitDirPath));
+    git = Git.wrap(createRepo(treeDirPath, gitDirPath, GitWorks.anew));
 //    System.out.println(printRepoInfo());
 
     if (GitWorks.anew) {
-      addRemotes(git, fe, Integer.MAX_VALUE);
+      if (GitWorks.alternates)
+        linkRemotes(git, fe, Integer.MAX_VALUE);
+      else
+        addRemotes(git, fe, Integer.MAX_VALUE);
     }
 
     name = GitWorks.getSafeName(fe);
     id = fe.getRetrievalTimestamp();
     if (allBranches == null) buildBranchesMap(fe.howManyForks());
 
-    walk = new RevWalk(git.getRepository());
-
+    reach = new Reachability(allBranches);
+    reach.compute(git.getRepository(), allCommits == null);
     if (allCommits == null) {
       init();
-      getCommitsInB(walk, false);
+      cos = getCommits(reach, git.getRepository());
+      getCommitsInB(reach, cos, false);
       tailor();
+    } else {
+      cos = getCommits(reach, git.getRepository());
     }
-    getCommitsInB(walk, true);
-    getCommitsInR(walk, false);
-    getCommitsInR(walk, true);
-    getCommitsNotInR(walk);
+    getCommitsInB(reach, cos, true);
+    getCommitsInR(reach, cos);
+    reach = null;
+    cos = null;
 
     authOfComInB = computePersonFreq(comInB);
     authOfComOnlyInB = computePersonFreq(comOnlyInB);
@@ -672,11 +793,6 @@ void analyzeUmbrella(ForkEntry fe) throws Exception {
     e.printStackTrace();
   }
   finally {
-    if (walk != null) {
-      walk.dispose();
-      walk.release();
-      walk = null;
-    }
     if (git != null) {
       git.getRepository().close();
       git = null;
@@ -686,6 +802,81 @@ void analyzeUmbrella(ForkEntry fe) throws Exception {
 }
 
 
+/**
+ * Incremental counterpart of {@link #analyzeUmbrella(ForkEntry)}, for a GitMiner imported from a
+ * previous dump of the same fork tree. The existing umbrella repo is refreshed (so only new objects
+ * are fetched), only the commits that are not in allCommits yet are read, the branch and fork maps
+ * are computed again and the metagraph is patched with the new commits, rather than rebuilt.
+ *
+ * @param fe
+ * @return False if the dumped results cannot be updated (no umbrella repo or metagraph, commits no
+ *         longer reachable from any branch, inconsistent metagraph): this GitMiner must then be
+ *         discarded and the fork tree analyzed anew.
+ * @throws Exception
+ */
+@SuppressWarnings("unchecked")
+boolean updateUmbrella(ForkEntry fe) throws Exception {
+
+  Reachability reach;
+  Commit[] cos;
+  int known;
+
+  String gitDirPath = GitWorks.gits_out_dir + GitWorks.getSafeName(fe)
+      + ((GitWorks.bare == true) ? ".git" : "/.git");
+  String treeDirPath = GitWorks.trees_out_dir + GitWorks.getSafeName(fe);
+  if (allCommits == null || metaGraph == null || metaGraph.dags.isEmpty()
+      || !new File(gitDirPath).isDirectory())
+    return false;
+
+  try {
+    git = Git.wrap(createRepo(treeDirPath, gitDirPath, false));
+    if (GitWorks.alternates)
+      linkRemotes(git, fe, Integer.MAX_VALUE);
+    else
+      addRemotes(git, fe, Integer.MAX_VALUE);
+    pruneRemotes(git, fe, Integer.MAX_VALUE);
+    id = fe.getRetrievalTimestamp();
+    for (Commit c : allCommits) { // branches are listed anew
+      c.branches.clear();
+      c.heads = null;
+    }
+    branches = null;
+    buildBranchesMap(fe.howManyForks());
+
+    reach = new Reachability(allBranches);
+    reach.compute(git.getRepository(), false);
+    known = allCommits.size();
+    cos = getCommits(reach, git.getRepository());
+    if (reach.size() - (allCommits.size() - known) < known) {
+      System.err.println("GitMiner ( " + name + " -- " + id
+          + " ) ERROR : some commits are not in any branch anymore!");
+      return false;
+    }
+    getCommitsInB(reach, cos, false);
+    tailor();
+    getCommitsInB(reach, cos, true);
+    getCommitsInR(reach, cos);
+    reach = null;
+    cos = null;
+
+    authOfComInB = computePersonFreq(comInB);
+    authOfComOnlyInB = computePersonFreq(comOnlyInB);
+    authOfComInF = computePersonFreq(comInF);
+    authOfComOnlyInF = computePersonFreq(comOnlyInF);
+    authOfComNotInF = computePersonFreq(comNotInF);
+
+    metaGraph.addHeads(getSortedHeads());
+    return metaGraph.checkup();
+  }
+  finally {
+    if (git != null) {
+      git.getRepository().close();
+      git = null;
+    }
+  }
+}
+
+
 @SuppressWarnings({ "rawtypes", "unchecked" })
 private void externalizeMap(LinkedHashMap map, ObjectOutput out) throws IOException {
   int keyType = 0, valueType = 1, size;
@@ -721,7 +912,7 @@ private void externalizeMap(LinkedHashMap map, ObjectOutput out) throws IOExcept
       value = cit.next();
       switch (valueType) {
       case 0:
-        out.writeInt(Collections.binarySearch(allCommits, ((Commit)value)));
+        out.writeInt(Commit.indexOf(allCommits, ((Commit)value)));
         break;
       case 1:
         out.writeInt(((BranchRef)value).index);
@@ -735,7 +926,7 @@ private void externalizeMap(LinkedHashMap map, ObjectOutput out) throws IOExcept
     }
     switch (keyType) {
     case 0:
-      out.writeInt(Collections.binarySearch(allCommits, (Commit)e.getKey()));
+      out.writeInt(Commit.indexOf(allCommits, (Commit)e.getKey()));
     break;
     case 1:
       out.writeUTF(((String)e.getKey()));
@@ -792,13 +983,102 @@ private LinkedHashMap importMap(ObjectInput in) throws IOException {
 }
 
 
-@SuppressWarnings("unchecked")
-@Override
-public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
-  int i, j, size;
-  BranchRef b;
+static final int NUM_MAPS = 11; // number of commit and author maps, see getMap()
+
+
+/**
+ * @return The i-th commit or author map, in dump order.
+ */
+@SuppressWarnings("rawtypes")
+LinkedHashMap getMap(int i) {
+  switch (i) {
+  case 0:
+    return branches;
+  case 1:
+    return comInB;
+  case 2:
+    return comOnlyInB;
+  case 3:
+    return comInF;
+  case 4:
+    return comOnlyInF;
+  case 5:
+    return comNotInF;
+  case 6:
+    return authOfComInB;
+  case 7:
+    return authOfComOnlyInB;
+  case 8:
+    return authOfComInF;
+  case 9:
+    return authOfComOnlyInF;
+  case 10:
+    return authOfComNotInF;
+  default:
+    throw new IndexOutOfBoundsException("Map: " + i);
+  }
+}
+
+
+@SuppressWarnings({ "rawtypes", "unchecked" })
+private void setMap(int i, LinkedHashMap map) {
+  switch (i) {
+  case 0:
+    branches = map;
+  break;
+  case 1:
+    comInB = map;
+  break;
+  case 2:
+    comOnlyInB = map;
+  break;
+  case 3:
+    comInF = map;
+  break;
+  case 4:
+    comOnlyInF = map;
+  break;
+  case 5:
+    comNotInF = map;
+  break;
+  case 6:
+    authOfComInB = map;
+  break;
+  case 7:
+    authOfComOnlyInB = map;
+  break;
+  case 8:
+    authOfComInF = map;
+  break;
+  case 9:
+    authOfComOnlyInF = map;
+  break;
+  case 10:
+    authOfComNotInF = map;
+  break;
+  default:
+    throw new IndexOutOfBoundsException("Map: " + i);
+  }
+}
+
+
+// The parts of the dump, in order. They are read and written separately by GitMinerDump as well.
+
+void readName(ObjectInput in) throws IOException {
   name = in.readUTF();
   id = in.readLong();
+}
+
+
+void writeName(ObjectOutput out) throws IOException {
+  out.writeUTF(name);
+  out.writeLong(id);
+}
+
+
+void readBranches(ObjectInput in) throws IOException, ClassNotFoundException {
+  int i, size;
+  BranchRef b;
   size = in.readInt();
   allBranches = new ArrayList<BranchRef>(size);
   for (i = 0; i < size; i++) {
@@ -807,6 +1087,21 @@ public void readExternal(ObjectInput in) throws IOException, ClassNotFoundExcept
     b.index = i;
     allBranches.add(b);
   }
+}
+
+
+void writeBranches(ObjectOutput out) throws IOException {
+  out.writeInt(allBranches.size());
+  Iterator<BranchRef> itb = allBranches.iterator();
+  while (itb.hasNext()) {
+    itb.next().writeExternal(out);
+  }
+}
+
+
+// it needs the branches
+void readCommits(ObjectInput in) throws IOException, ClassNotFoundException {
+  int i, j, size;
   Commit c;
   size = in.readInt();
   allCommits = new ArrayList<Commit>(size);
@@ -823,6 +1118,22 @@ public void readExternal(ObjectInput in) throws IOException, ClassNotFoundExcept
     }
     allCommits.add(c);
   }
+  commitIndex = new CommitIndex(allCommits);
+}
+
+
+void writeCommits(ObjectOutput out) throws IOException {
+  out.writeInt(allCommits.size());
+  Iterator<Commit> itc = allCommits.iterator();
+  while (itc.hasNext()) {
+    itc.next().writeExternal(out);
+  }
+}
+
+
+// it needs the commits, whose metadata are parsed as soon as the authors are known
+void readAuthors(ObjectInput in) throws IOException, ClassNotFoundException {
+  int i, size;
   Person p;
   size = in.readInt();
   allAuthors = new ArrayList<Person>(size);
@@ -831,68 +1142,70 @@ public void readExternal(ObjectInput in) throws IOException, ClassNotFoundExcept
     p.readExternal(in);
     allAuthors.add(p);
   }
+  commitTable = new CommitTable(commitIndex, allAuthors);
+}
 
-  branches = importMap(in);
-  comInB = importMap(in);
 
-  comOnlyInB = importMap(in);
-  comInF = importMap(in);
-  comOnlyInF = importMap(in);
-  comNotInF = importMap(in);
-  authOfComInB = importMap(in);
-  authOfComOnlyInB = importMap(in);
-  authOfComInF = importMap(in);
-  authOfComOnlyInF = importMap(in);
-  authOfComNotInF = importMap(in);
+void writeAuthors(ObjectOutput out) throws IOException {
+  out.writeInt(allAuthors.size());
+  Iterator<Person> itp = allAuthors.iterator();
+  while (itp.hasNext()) {
+    itp.next().writeExternal(out);
+  }
+}
+
+
+// it needs the commits and the branches
+void readMap(int i, ObjectInput in) throws IOException {
+  setMap(i, importMap(in));
+}
+
 
+void writeMap(int i, ObjectOutput out) throws IOException {
+  externalizeMap(getMap(i), out);
+}
+
+
+// it needs the commits
+void readMetaGraph(ObjectInput in) throws IOException, ClassNotFoundException {
   metaGraph = new MetaGraph(allCommits);
   metaGraph.readExternal(in);
   if (!metaGraph.checkup())
     System.err.println("ERROR : Metagraph checkup failed!!!");
 //  else // XXX
 //    System.out.println(this.name + " post-dated commit ratio : " + metaGraph.checkTimestamps()); //.exportToGexf(name + "_complete");
-
 }
 
 
-@Override
-public void writeExternal(ObjectOutput out) throws IOException {
-  out.writeUTF(name);
-  out.writeLong(id);
-  out.writeInt(allBranches.size());
-  Iterator<BranchRef> itb = allBranches.iterator();
-  while (itb.hasNext()) {
-    itb.next().writeExternal(out);
-  }
-  out.writeInt(allCommits.size());
-  Iterator<Commit> itc = allCommits.iterator();
-  while (itc.hasNext()) {
-    itc.next().writeExternal(out);
-  }
-  out.writeInt(allAuthors.size());
-  Iterator<Person> itp = allAuthors.iterator();
-  while (itp.hasNext()) {
-    itp.next().writeExternal(out);
-  }
-
-  externalizeMap(branches, out);
-  externalizeMap(comInB, out);
-
-  externalizeMap(comOnlyInB, out);
-  externalizeMap(comInF, out);
-  externalizeMap(comOnlyInF, out);
-  externalizeMap(comNotInF, out);
-  externalizeMap(authOfComInB, out);
-  externalizeMap(authOfComOnlyInB, out);
-  externalizeMap(authOfComInF, out);
-  externalizeMap(authOfComOnlyInF, out);
-  externalizeMap(authOfComNotInF, out);
-
+void writeMetaGraph(ObjectOutput out) throws IOException {
   if (metaGraph == null)
     out.writeInt(0);
   else
     metaGraph.writeExternal(out);
+}
+
 
+@Override
+public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+  readName(in);
+  readBranches(in);
+  readCommits(in);
+  readAuthors(in);
+  for (int i = 0; i < NUM_MAPS; i++)
+    readMap(i, in);
+  readMetaGraph(in);
+}
+
+
+@Override
+public void writeExternal(ObjectOutput out) throws IOException {
+  writeName(out);
+  writeBranches(out);
+  writeCommits(out);
+  writeAuthors(out);
+  for (int i = 0; i < NUM_MAPS; i++)
+    writeMap(i, out);
+  writeMetaGraph(out);
   out.flush();
 }
 
@@ -0,0 +1,219 @@
+package gitworks;
+
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInput;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutput;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+
+
+/**
+ * Sectioned, uncompressed dump of a GitMiner (.gms), as an alternative to the gzipped .gm dump of
+ * {@link GitWorks#exportData}. The file starts with a table of the offsets and lengths of its
+ * sections: name, branches, commits, authors, each of the maps and the metagraph. Each section is
+ * memory-mapped and deserialized only when it is loaded (along with the sections it depends on),
+ * thus readers pay only for the sections they touch.
+ */
+class GitMinerDump {
+
+private static final int MAGIC = 0x47574d53; // "GWMS"
+private static final int VERSION = 1;
+
+static final int NAME = 0;
+static final int BRANCHES = 1;
+static final int COMMITS = 2;
+static final int AUTHORS = 3;
+static final int MAPS = 4; // the i-th map of GitMiner.getMap() is section MAPS + i
+static final int METAGRAPH = MAPS + GitMiner.NUM_MAPS;
+static final int NUM_SECTIONS = METAGRAPH + 1;
+
+static final int COM_IN_F = MAPS + 3; // the only map needed to compute results
+
+private RandomAccessFile file;
+private long[] offset;
+private long[] length;
+private GitMiner gm; // the target of the sections loaded so far
+private boolean[] loaded;
+
+
+/**
+ * A read-only stream over a mapped section.
+ */
+private static class BufferInputStream extends InputStream {
+
+private ByteBuffer buf;
+
+
+BufferInputStream(ByteBuffer buf) {
+  this.buf = buf;
+}
+
+
+@Override
+public int read() {
+  return buf.hasRemaining() ? buf.get() & 0xff : -1;
+}
+
+
+@Override
+public int read(byte[] b, int off, int len) {
+  if (len == 0) return 0;
+  if (!buf.hasRemaining()) return -1;
+  len = Math.min(len, buf.remaining());
+  buf.get(b, off, len);
+  return len;
+}
+
+
+@Override
+public int available() {
+  return buf.remaining();
+}
+
+}
+
+
+/**
+ * It opens the dump and reads its section table.
+ */
+GitMinerDump(String filePath) throws IOException {
+  int i, n;
+  file = new RandomAccessFile(filePath, "r");
+  if (file.readInt() != MAGIC || file.readInt() != VERSION) {
+    file.close();
+    throw new IOException("GitMinerDump : ERROR : " + filePath + " is not a sectioned dump.");
+  }
+  n = file.readInt();
+  offset = new long[n];
+  length = new long[n];
+  for (i = 0; i < n; i++) {
+    offset[i] = file.readLong();
+    length[i] = file.readLong();
+  }
+  loaded = new boolean[n];
+}
+
+
+/**
+ * It loads the given sections into gm (all of them, if none is given), plus the sections they
+ * depend on. Sections loaded already are not read again, as long as the same GitMiner is passed.
+ */
+void load(GitMiner gm, int... sections) throws IOException, ClassNotFoundException {
+  int i;
+  if (this.gm != gm) {
+    this.gm = gm;
+    loaded = new boolean[offset.length];
+  }
+  if (sections.length == 0) {
+    for (i = 0; i < NUM_SECTIONS; i++)
+      loadSection(i);
+  } else {
+    for (int s : sections)
+      loadSection(s);
+  }
+}
+
+
+private void loadSection(int s) throws IOException, ClassNotFoundException {
+  if (s < 0 || s >= offset.length)
+    throw new IOException("GitMinerDump : ERROR : section " + s + " is not in the dump.");
+  if (loaded[s]) return;
+  if (s == COMMITS) loadSection(BRANCHES);
+  if (s == AUTHORS) loadSection(COMMITS);
+  if (s >= MAPS) loadSection(AUTHORS);
+  if (s != NAME) loadSection(NAME);
+  ObjectInput in = new ObjectInputStream(new BufferInputStream(file.getChannel().map(
+      FileChannel.MapMode.READ_ONLY, offset[s], length[s])));
+  switch (s) {
+  case NAME:
+    gm.readName(in);
+  break;
+  case BRANCHES:
+    gm.readBranches(in);
+  break;
+  case COMMITS:
+    gm.readCommits(in);
+  break;
+  case AUTHORS:
+    gm.readAuthors(in);
+  break;
+  case METAGRAPH:
+    gm.readMetaGraph(in);
+  break;
+  default:
+    gm.readMap(s - MAPS, in);
+  }
+  in.close();
+  loaded[s] = true;
+}
+
+
+boolean isLoaded(int s) {
+  return loaded[s];
+}
+
+
+void close() throws IOException {
+  file.close();
+}
+
+
+/**
+ * It writes gm to the given file as a sectioned dump.
+ */
+static void export(GitMiner gm, String filePath) throws IOException {
+  int s;
+  File dump = new File(filePath);
+  if (dump.exists()) dump.delete();
+  RandomAccessFile out = new RandomAccessFile(dump, "rw");
+  long[] offset = new long[NUM_SECTIONS];
+  long[] length = new long[NUM_SECTIONS];
+  out.seek(3 * 4 + NUM_SECTIONS * 2 * 8); // the table is written at the end
+  OutputStream os = Channels.newOutputStream(out.getChannel());
+  ObjectOutput oo;
+  for (s = 0; s < NUM_SECTIONS; s++) {
+    offset[s] = out.getFilePointer();
+    oo = new ObjectOutputStream(new BufferedOutputStream(os, 1 << 16));
+    switch (s) {
+    case NAME:
+      gm.writeName(oo);
+    break;
+    case BRANCHES:
+      gm.writeBranches(oo);
+    break;
+    case COMMITS:
+      gm.writeCommits(oo);
+    break;
+    case AUTHORS:
+      gm.writeAuthors(oo);
+    break;
+    case METAGRAPH:
+      gm.writeMetaGraph(oo);
+    break;
+    default:
+      gm.writeMap(s - MAPS, oo);
+    }
+    oo.flush(); // not closed: that would close the file as well
+    length[s] = out.getFilePointer() - offset[s];
+  }
+  out.seek(0);
+  out.writeInt(MAGIC);
+  out.writeInt(VERSION);
+  out.writeInt(NUM_SECTIONS);
+  for (s = 0; s < NUM_SECTIONS; s++) {
+    out.writeLong(offset[s]);
+    out.writeLong(length[s]);
+  }
+  out.close();
+}
+
+}
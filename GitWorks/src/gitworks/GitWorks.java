@@ -11,6 +11,7 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.ObjectInput;
 import java.io.ObjectInputStream;
@@ -27,8 +28,13 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.math3.random.MersenneTwister;
 
@@ -40,11 +46,29 @@ public static boolean bare = true; // the umbrella repo is a bare git repo
 
 public static boolean anew = true; // (re-)create an umbrella repo anew
 
+public static boolean alternates = false; // new umbrella repos borrow the forks' objects (git alternates)
+
 static boolean computeUmbrellas = false; // if true compute umbrella repos anew ; if false use
                                           // serialized forkList
 static boolean newAnalysis = false; // if true perform a full gitMiner analysis ; if false use serialized gitMiner data
 static boolean compuFeatures = false; // if true compute features from gitMiner data; if false, use serialized features
 static boolean resultsOnly = true; // only compute results from serialized features
+static int workers = 1; // number of fork trees mined at the same time (-Dgitworks.workers=N)
+static int fetchWorkers = 1; // number of fork remotes fetched at the same time (-Dgitworks.fetchWorkers=N)
+static int motifSamples = 1000; // randomized samples behind the motif z-scores, 0 for none
+                                // (-Dgitworks.motifSamples=N)
+static int windowWeeks = 0; // width in weeks of the sliding window behind the weekly evolution curves
+                            // of the metagraphs, 0 for none (-Dgitworks.windowWeeks=N)
+static boolean incremental = false; // update the dumped gitMiner data with the new commits only, if
+                                    // possible (-Dgitworks.incremental=true)
+static boolean sectionedDumps = false; // dump gitMiner data as sectioned .gms files, which can be
+                                       // loaded partially (-Dgitworks.sectionedDumps=true)
+static boolean streamedDumps = false; // write .gm dumps as record streams, which take bounded memory
+                                      // (-Dgitworks.streamedDumps=true); both kinds are read back
+static String dumpCodec = "gzip"; // codec of the .gm and .feat dumps being written: none, fast or gzip
+                                  // (-Dgitworks.dumpCodec=...); dumps are read with their own codec
+static double heapShare = 0.75; // share of the max heap that the fork trees being mined may take
+static double heapPerDiskByte = 3.0; // estimated heap bytes needed per byte of repo (or dump) on disk
 
 public static String prefix = "JGIT_"; // to be prepended to any jgit-generated output file name
 public static String field_sep = "    "; // field separator in input datafile's lines
@@ -259,7 +283,6 @@ static ForkList populateForkList(String inputFile) throws Exception {
 public static void main(String[] args) throws Exception {
 
   ForkEntry fe;
-  Features feat;
   GitMiner gitMiner;
 
   if (args.length < 4) {
@@ -268,6 +291,16 @@ public static void main(String[] args) throws Exception {
     System.exit(2);
   }
   pwd = System.getenv("PWD"); // trees_out_dir + ".."
+  workers = Integer.getInteger("gitworks.workers", workers);
+  fetchWorkers = Integer.getInteger("gitworks.fetchWorkers", fetchWorkers);
+  motifSamples = Integer.getInteger("gitworks.motifSamples", motifSamples);
+  windowWeeks = Integer.getInteger("gitworks.windowWeeks", windowWeeks);
+  alternates = Boolean.getBoolean("gitworks.alternates") || alternates;
+  incremental = Boolean.getBoolean("gitworks.incremental") || incremental;
+  sectionedDumps = Boolean.getBoolean("gitworks.sectionedDumps") || sectionedDumps;
+  streamedDumps = Boolean.getBoolean("gitworks.streamedDumps") || streamedDumps;
+  dumpCodec = System.getProperty("gitworks.dumpCodec", dumpCodec);
+  DumpCodec.forName(dumpCodec); // fail early on unknown codecs
   repo_dir = args[1].trim() + (args[1].trim().endsWith("/") ? "" : "/");
   if (args.length == 5) ids = args[4].trim().split(",");
   gits_out_dir = args[2].trim() + (args[2].trim().endsWith("/") ? "" : "/");
@@ -301,53 +334,15 @@ public static void main(String[] args) throws Exception {
 
   /************** build and analyze fork trees ****************/
 
-  for (int i = 0, j = 0; !resultsOnly && i < forkTrees.size() && (ids == null || j < ids.length); i++) {
-    if (ids != null)
-      fe = GitWorks.getElement(projects, ids[j++]);
-    else
-      fe = forkTrees.get(i);
-    try {
-      feat = new Features();
-      gitMiner = new GitMiner();
-      if (!newAnalysis && compuFeatures)
-        Runtime.getRuntime().exec(pwd + "/loadDumps.sh " + getSafeName(fe)).waitFor();
-      if (newAnalysis) {
-        if (anew) Runtime.getRuntime().exec(pwd + "/loadRepos.sh " + getSafeName(fe)).waitFor();
-        if (computeUmbrellas) {
-          if (anew) purgeMissingForks(projects, fe);
-          computeAggregates(new String[] { fe.getId() }, projects, Integer.MAX_VALUE);
-        }
-        gitMiner.analyzeUmbrella(fe);
-        if (anew) Runtime.getRuntime().exec(pwd + "/cleanup.sh " + getSafeName(fe)).waitFor();
-        if (!gitMiner.buildMetaGraph()) {
-          System.err.println("ERROR : Metagraph checkup failed!!!");
-          gitMiner.deleteMetaGraph();
-        } else for (Dag d : gitMiner.metaGraph.dags)
-          d.bfVisit();
-        exportData(gitMiner, trees_out_dir + "dumpFiles/" + gitMiner.name + ".gm"); // + "_" + gitMiner.id
-        System.out.println(gitMiner.getInfo()); System.out.flush();
-      } else if (compuFeatures) importData(gitMiner, trees_out_dir + "dumpFiles/" + getSafeName(fe) + ".gm"); // + "_*"
-      // System.out.println(gitMiner.getInfo()); System.out.flush();
-      if (compuFeatures) {
-        feat.setFeatures(projects, fe, gitMiner);
-        features.addFeatures(feat);
-        exportData(feat, trees_out_dir + "dumpFiles/" + feat.name + ".feat");
-      } else importData(feat, trees_out_dir + "dumpFiles/" + getSafeName(fe) + ".feat");
-      if (newAnalysis || compuFeatures)
-        Runtime.getRuntime().exec(pwd + "/backupDumps.sh " + getSafeName(fe)).waitFor();
-      importModStats(gitMiner);
-      computeMetaGraph(gitMiner, feat); // XXX
-    }
-    catch (Exception e) {
-      System.err.println("ERROR : computation of " + getSafeName(fe)
-          + " was interrupted before completion!");
-      e.printStackTrace();
-    }
-    finally {
-      gitMiner = null;
-      feat = null;
-      System.gc();
+  if (!resultsOnly) {
+    ArrayList<ForkEntry> todo = new ArrayList<ForkEntry>();
+    for (int i = 0, j = 0; i < forkTrees.size() && (ids == null || j < ids.length); i++) {
+      if (ids != null)
+        todo.add(GitWorks.<ForkEntry>getElement(projects, ids[j++]));
+      else
+        todo.add(forkTrees.get(i));
     }
+    mineForkTrees(todo);
   }
   if (computeUmbrellas && newAnalysis) {
     exportData(projects, trees_out_dir + "dumpFiles/" + "forkListDump");
@@ -369,43 +364,20 @@ public static void main(String[] args) throws Exception {
     //    exportData(features, trees_out_dir + "dumpFiles/" + "featureListDump");
     // waitForUser("");
     // importData(features, trees_out_dir + "dumpFiles/" + "featureListDump");
-    Features ft;
     features = null;
+    ArrayList<ForkEntry> todo = new ArrayList<ForkEntry>();
     for (int i = 0, j = 0; i < forkTrees.size() && (ids == null || j < ids.length); i++) {
       if (ids != null)
-        fe = GitWorks.getElement(projects, ids[j++]);
+        todo.add(GitWorks.<ForkEntry>getElement(projects, ids[j++]));
       else
-        fe = forkTrees.get(i);
-      // System.err.print("Getting " + getSafeName(fe) + "...");
-      // System.err.flush();
-
-      // ft = GitWorks.getElement(features, getSafeName(fe));
-      ft = new Features();
-      importData(ft, trees_out_dir + "dumpFiles/" + getSafeName(fe) + ".feat");
-      // Runtime.getRuntime().exec(pwd + "/loadDumps.sh " + getSafeName(fe)).waitFor(); XXX
-      gitMiner = new GitMiner();
-      importData(gitMiner, trees_out_dir + "dumpFiles/" + getSafeName(fe) + ".gm");
-      // Runtime.getRuntime().exec(pwd + "/backupDumps.sh " + getSafeName(fe)).waitFor(); XXX
-      // System.err.println(" done.");
-      // System.err.flush();
-
-      // importModStats(gitMiner);
-      // exportData(gitMiner, trees_out_dir + "dumpFiles/" + gitMiner.name + ".gm");
-
-      computeMetaGraph(gitMiner, ft); //XXX
-      // purgeMissingForks(forkTrees, fe);
-      // testGitective(gitMiner, fe, ft);
-      // feats.add(ft);
-
-      gitMiner = null;
-      ft = null;
-      // System.gc();
+        todo.add(forkTrees.get(i));
     }
-
+    loadForkTrees(todo);
   }
   // Results.createCircosFiles(feats); // XXX
   // Results.printoutForkStats(feats);
   Results.metagraphStats(mgs, feats);
+  if (windowWeeks > 0) Results.computeWindowStats(mgs, feats, windowWeeks * Results.windowStep);
   // int i = 0;
   // for (MetaGraph mg : mgs) {
   // mg.getDensestDag().exportToGexf(feats.get(i++).name);
@@ -416,6 +388,238 @@ public static void main(String[] args) throws Exception {
 }
 
 
+/**
+ * It mines the given fork trees, running up to {@link #workers} of them at the same time. A fork
+ * tree is admitted only when its estimated heap footprint (see {@link #estimateFootprint}) fits
+ * within {@link #heapShare} of the max heap, minus what the running ones are taking; a fork tree
+ * larger than that runs alone. The metagraphs that are kept are appended to mgs (and their
+ * features to feats) in the order of the input list, whatever the order of completion.
+ *
+ * @param trees
+ * @throws InterruptedException
+ */
+static void mineForkTrees(ArrayList<ForkEntry> trees) throws InterruptedException {
+  final int budget = (int)Math.max(1L, (long)(Runtime.getRuntime().maxMemory() * heapShare) >> 20);
+  final Semaphore heap = new Semaphore(budget, true); // MB of heap left for admission
+  final MetaGraph[] kept = new MetaGraph[trees.size()];
+  final Features[] keptFeats = new Features[trees.size()];
+  ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, workers));
+  for (int i = 0; i < trees.size(); i++) {
+    final int k = i;
+    final ForkEntry fe = trees.get(i);
+    final int cost = (int)Math.min(budget, Math.max(1L, estimateFootprint(fe) >> 20));
+    heap.acquire(cost);
+    pool.execute(new Runnable() {
+
+      public void run() {
+        Features feat = new Features();
+        try {
+          kept[k] = mineForkTree(fe, feat);
+          if (kept[k] != null) keptFeats[k] = feat;
+        }
+        finally {
+          heap.release(cost);
+        }
+      }
+    });
+  }
+  pool.shutdown();
+  pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+  for (int i = 0; i < kept.length; i++) {
+    if (kept[i] != null) {
+      mgs.add(kept[i]);
+      feats.add(keptFeats[i]);
+    }
+  }
+}
+
+
+// the dumps of a fork tree, as loaded by loadForkTrees
+static class LoadedTree {
+
+  Features feat;
+  GitMiner gitMiner;
+
+  LoadedTree(Features feat, GitMiner gitMiner) {
+    this.feat = feat;
+    this.gitMiner = gitMiner;
+  }
+
+}
+
+
+/**
+ * It loads the dumps (features and gitMiner data) of the given fork trees, decoding up to
+ * {@link #workers} of them at the same time, and it builds their mainline metagraphs in the order
+ * of the input list, as they become available. Loading runs ahead of the metagraph building by at
+ * most twice as many fork trees as workers, and only as long as their estimated heap footprint
+ * (see {@link #estimateFootprint}) fits within {@link #heapShare} of the max heap; a fork tree is
+ * charged until its metagraph has been built. Kept metagraphs are appended to mgs (and their
+ * features to feats).
+ *
+ * @param trees
+ * @throws Exception
+ *           The first error met while loading, in list order.
+ */
+static void loadForkTrees(ArrayList<ForkEntry> trees) throws Exception {
+  int i, next = 0, n = trees.size();
+  final int budget = (int)Math.max(1L, (long)(Runtime.getRuntime().maxMemory() * heapShare) >> 20);
+  Semaphore heap = new Semaphore(budget); // MB of heap left for admission
+  int[] cost = new int[n];
+  ArrayList<Future<LoadedTree>> loaded = new ArrayList<Future<LoadedTree>>(n);
+  LoadedTree dumps;
+  MetaGraph mg;
+  ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, workers));
+  try {
+    for (i = 0; i < n; i++) {
+      // when nothing is in flight (next == i) all the budget is free, so the next one is admitted
+      while (next < n && next - i < 2 * Math.max(1, workers)) {
+        cost[next] = (int)Math.min(budget, Math.max(1L, estimateFootprint(trees.get(next)) >> 20));
+        if (!heap.tryAcquire(cost[next])) break;
+        final ForkEntry fe = trees.get(next++);
+        loaded.add(pool.submit(new Callable<LoadedTree>() {
+
+          public LoadedTree call() throws Exception {
+            Features ft = new Features();
+            importData(ft, trees_out_dir + "dumpFiles/" + getSafeName(fe) + ".feat");
+            GitMiner gitMiner = new GitMiner();
+            importMiner(gitMiner, fe, GitMinerDump.COM_IN_F); // all that computeMetaGraph needs
+            return new LoadedTree(ft, gitMiner);
+          }
+        }));
+      }
+      try {
+        dumps = loaded.get(i).get();
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof Exception) throw (Exception)e.getCause();
+        throw e;
+      }
+      loaded.set(i, null);
+      // importModStats(gitMiner);
+      mg = computeMetaGraph(dumps.gitMiner, dumps.feat); //XXX
+      if (mg != null) {
+        mgs.add(mg);
+        feats.add(dumps.feat);
+      }
+      dumps = null;
+      heap.release(cost[i]);
+    }
+  }
+  finally {
+    pool.shutdownNow();
+  }
+}
+
+
+/**
+ * It builds and analyzes a single fork tree: the umbrella repo is mined (or the dumps are loaded),
+ * the features are computed (or loaded) and the mainline metagraph is built. Any error is reported
+ * and confined to this fork tree.
+ *
+ * @param fe
+ * @param feat
+ *          The features of this fork tree, to be filled in.
+ * @return The mainline metagraph to be kept, or null.
+ */
+static MetaGraph mineForkTree(ForkEntry fe, Features feat) {
+  GitMiner gitMiner = new GitMiner();
+  try {
+    if (!newAnalysis && compuFeatures)
+      Runtime.getRuntime().exec(pwd + "/loadDumps.sh " + getSafeName(fe)).waitFor();
+    if (newAnalysis) {
+      if (anew) Runtime.getRuntime().exec(pwd + "/loadRepos.sh " + getSafeName(fe)).waitFor();
+      if (computeUmbrellas) {
+        synchronized (projects) { // the fork list is shared among the running fork trees
+          if (anew) purgeMissingForks(projects, fe);
+          computeAggregates(new String[] { fe.getId() }, projects, Integer.MAX_VALUE);
+        }
+      }
+      boolean updated = false;
+      if (incremental && getDumpFile(fe).isFile()) {
+        importMiner(gitMiner, fe);
+        updated = gitMiner.updateUmbrella(fe);
+        if (!updated) {
+          System.err.println("WARNING : cannot update " + getSafeName(fe) + " : analyzing it anew.");
+          gitMiner = new GitMiner();
+        }
+      }
+      if (!updated) gitMiner.analyzeUmbrella(fe);
+      if (anew) Runtime.getRuntime().exec(pwd + "/cleanup.sh " + getSafeName(fe)).waitFor();
+      if (!updated && !gitMiner.buildMetaGraph()) { // an updated metagraph has been checked already
+        System.err.println("ERROR : Metagraph checkup failed!!!");
+        gitMiner.deleteMetaGraph();
+      } else if (!updated) for (Dag d : gitMiner.metaGraph.dags) // addHeads visited the new dags
+        d.bfVisit();
+      exportMiner(gitMiner); // + "_" + gitMiner.id
+      System.out.println(gitMiner.getInfo()); System.out.flush();
+    } else if (compuFeatures) importMiner(gitMiner, fe); // + "_*"
+    // System.out.println(gitMiner.getInfo()); System.out.flush();
+    if (compuFeatures) {
+      feat.setFeatures(projects, fe, gitMiner);
+      synchronized (features) {
+        features.addFeatures(feat);
+      }
+      exportData(feat, trees_out_dir + "dumpFiles/" + feat.name + ".feat");
+    } else importData(feat, trees_out_dir + "dumpFiles/" + getSafeName(fe) + ".feat");
+    if (newAnalysis || compuFeatures)
+      Runtime.getRuntime().exec(pwd + "/backupDumps.sh " + getSafeName(fe)).waitFor();
+    importModStats(gitMiner);
+    return computeMetaGraph(gitMiner, feat); // XXX
+  }
+  catch (Exception e) {
+    System.err.println("ERROR : computation of " + getSafeName(fe)
+        + " was interrupted before completion!");
+    e.printStackTrace();
+    return null;
+  }
+  finally {
+    gitMiner = null;
+    if (workers <= 1) System.gc();
+  }
+}
+
+
+/**
+ * It estimates the heap needed to mine a fork tree, out of the size on disk of what is going to be
+ * loaded: the fork repos (new umbrella), the umbrella repo (existing umbrella) or the dump.
+ *
+ * @param fe
+ * @return The estimated footprint, in bytes.
+ */
+static long estimateFootprint(ForkEntry fe) {
+  long res;
+  if (newAnalysis && anew) {
+    res = 0L;
+    ArrayList<ForkEntry> stack = new ArrayList<ForkEntry>();
+    stack.add(fe);
+    while (!stack.isEmpty()) {
+      fe = stack.remove(stack.size() - 1);
+      res += diskSize(new File(getProjectPath(fe)));
+      if (fe.hasForks()) {
+        Iterator<ForkEntry> it = fe.getForks();
+        while (it.hasNext())
+          stack.add(it.next());
+      }
+    }
+  } else if (newAnalysis) {
+    res = diskSize(new File(gits_out_dir + getSafeName(fe) + (bare ? ".git" : "/.git")));
+  } else {
+    res = diskSize(getDumpFile(fe));
+  }
+  return (long)(res * heapPerDiskByte);
+}
+
+
+private static long diskSize(File f) {
+  if (!f.isDirectory()) return f.length();
+  long res = 0L;
+  File[] fs = f.listFiles();
+  if (fs != null) for (File c : fs)
+    res += diskSize(c);
+  return res;
+}
+
+
 static void importModStats(GitMiner gm) {
   BufferedReader in = null;
   String line, tokens[];
@@ -428,7 +632,7 @@ static void importModStats(GitMiner gm) {
       count++;
       tokens = line.split(" ");
       id.fromString(tokens[0]);
-      c = GitWorks.getElement(gm.allCommits, id);
+      c = gm.commitIndex.get(id);
       if (c == null) {
         //System.err.println("WARNING : No commit " + id.getName() + " in " + gm.name + ".");
         continue;
@@ -457,9 +661,11 @@ static ArrayList<MetaGraph> mgs = new ArrayList<MetaGraph>();
 static ArrayList<Features> feats = new ArrayList<Features>();
 static int repoCounter = 0;
 
-static void computeMetaGraph(GitMiner gm, Features ft) {
+// it returns the metagraph of the densest dag of the mainline, if it is worth keeping, or null
+static MetaGraph computeMetaGraph(GitMiner gm, Features ft) {
   Commit co;
   MetaGraph mg;
+  int n;
   ArrayList<Commit> heads = new ArrayList<Commit>();
   ArrayList<Commit> allComs = new ArrayList<Commit>();
 
@@ -467,23 +673,27 @@ static void computeMetaGraph(GitMiner gm, Features ft) {
   System.err.flush();
   for (Commit c : gm.comInF.get(ft.allForks[ft.rootIndex])) {
     co = new Commit(c);
-    GitWorks.addUnique(allComs, co);
+    allComs.add(co);
     if (co.isHead()) heads.add(co);
   }
+  Collections.sort(allComs);
   mg = MetaGraph.createMetaGraph(allComs, heads);
   System.err.println(" done.");
   System.err.flush();
   int[] stats = mg.getDensestDag().getSummaryStats(); // mg.getSummaryStats(); // XXX
   if (stats[3] >= 10) {
-    mgs.add(MetaGraph.createMetaGraph(mg.getDensestDag())); // mgs.add(mg); // XXX
-    feats.add(ft);
-    System.err.println("Taking repo # " + (++repoCounter) + " : " + ft.name + ", which has "
+    synchronized (mgs) {
+      n = ++repoCounter;
+    }
+    System.err.println("Taking repo # " + n + " : " + ft.name + ", which has "
         + mg.dags.size() + " dags, " + stats[3] + " metaedges, " + stats[0] + " roots, " + stats[1]
             + " nodes and " + stats[2] + " leaves, for a total of " + stats[7]
                 + " commits,\n\t of which " + stats[4] + " are branch nodes, " + stats[5]
                     + " are merge nodes and " + stats[6] + " are both.");
-  } else System.err.println("Discarding " + ft.name + " which has " + stats[3] + " metaedges.");
-
+    return MetaGraph.createMetaGraph(mg.getDensestDag()); // return mg; // XXX
+  }
+  System.err.println("Discarding " + ft.name + " which has " + stats[3] + " metaedges.");
+  return null;
 }
 
 
@@ -552,24 +762,83 @@ public static void testSubGraphs(GitMiner gm) {
 }
 
 
+/**
+ * It writes the given object as a record stream (see {@link RecordStream}), which does not keep
+ * track of what has been written, with the current codec.
+ */
+static void exportStream(Externalizable o, String filePath) throws IOException {
+  File dump = new File(filePath);
+  if (dump.exists()) dump.delete();
+  ObjectOutput out = new RecordStream.Output(DumpCodec.compress(new BufferedOutputStream(
+      new FileOutputStream(dump)), DumpCodec.forName(dumpCodec)));
+  o.writeExternal(out);
+  out.close(); // it finishes the compressed stream as well
+}
+
+
+/**
+ * @return The file holding the dumped gitMiner data of the given fork tree (either .gm or .gms, see
+ *         {@link #sectionedDumps}).
+ */
+static File getDumpFile(ForkEntry fe) {
+  return new File(trees_out_dir + "dumpFiles/" + getSafeName(fe)
+      + (sectionedDumps ? ".gms" : ".gm"));
+}
+
+
+/**
+ * It loads the dumped gitMiner data of the given fork tree. Out of a sectioned dump, only the given
+ * sections (see {@link GitMinerDump}) and the ones they depend on are loaded; all of them if none
+ * is given.
+ */
+static void importMiner(GitMiner gm, ForkEntry fe, int... sections) throws IOException,
+ClassNotFoundException {
+  if (sectionedDumps) {
+    GitMinerDump dump = new GitMinerDump(getDumpFile(fe).getPath());
+    dump.load(gm, sections);
+    dump.close();
+  } else
+    importData(gm, getDumpFile(fe).getPath());
+}
+
+
+static void exportMiner(GitMiner gm) throws IOException {
+  String dump = trees_out_dir + "dumpFiles/" + gm.name;
+  if (sectionedDumps)
+    GitMinerDump.export(gm, dump + ".gms");
+  else if (streamedDumps)
+    exportStream(gm, dump + ".gm");
+  else
+    exportData(gm, dump + ".gm");
+}
+
+
 public static void importData(Externalizable o, String filePath) throws FileNotFoundException,
 IOException, ClassNotFoundException {
-  ObjectInput in = new ObjectInputStream(new GZIPInputStream(new BufferedInputStream(
-      new FileInputStream(filePath))));
+  InputStream is = DumpCodec.decompress(new BufferedInputStream(new FileInputStream(filePath)));
+  if (!is.markSupported()) is = new BufferedInputStream(is);
+  ObjectInput in = RecordStream.isRecordStream(is) ? new RecordStream.Input(is)
+      : new ObjectInputStream(is);
   o.readExternal(in);
   in.close();
 }
 
 
 public static void exportData(Externalizable o, String filePath) throws IOException {
+  exportData(o, filePath, DumpCodec.forName(dumpCodec));
+}
+
+
+/**
+ * It writes the given object with the given codec (see {@link DumpCodec}).
+ */
+static void exportData(Externalizable o, String filePath, int codec) throws IOException {
   File dump = new File(filePath);
   if (dump.exists()) dump.delete();
-  GZIPOutputStream gzOut = new GZIPOutputStream(
-      new BufferedOutputStream(new FileOutputStream(dump)));
-  ObjectOutput out = new ObjectOutputStream(gzOut);
+  ObjectOutput out = new ObjectOutputStream(DumpCodec.compress(
+      new BufferedOutputStream(new FileOutputStream(dump)), codec));
   o.writeExternal(out);
-  gzOut.finish();
-  out.close();
+  out.close(); // it finishes the compressed stream as well
 }
 
 
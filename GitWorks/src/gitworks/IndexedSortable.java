@@ -29,6 +29,15 @@ static public int[] sortedPermutation(double[] original, boolean descending) {
 }
 
 
+static public int[] sortedPermutation(long[] original, boolean descending) {
+  Long copy[] = new Long[original.length];
+  int i = 0;
+  for (long d : original)
+    copy[i++] = d;
+  return sortedPermutation(copy, descending);
+}
+
+
 static public int[] sortedPermutation(int[] original, boolean descending) {
   Integer copy[] = new Integer[original.length];
   int i = 0;
@@ -0,0 +1,392 @@
+package gitworks;
+
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.util.Arrays;
+
+
+/**
+ * Compressed set of non-negative ints, in the spirit of Roaring bitmaps: values are grouped by their
+ * high 16 bits into containers, each holding the low 16 bits either as a sorted array (while it has
+ * at most 4096 values) or as a bitmap of 1024 words (8KB, beyond which an array would be larger).
+ * Unions, intersections and their cardinalities work container by container, a word at a time
+ * between bitmaps, thus sets of commits or authors of whole fork trees are combined cheaply.
+ * Values are best added in ascending order, which only ever touches the last container.
+ */
+class IntBitmap {
+
+private static final int ARRAY_MAX = 4096;
+private static final int WORDS = 1 << 10;
+
+private int size; // number of containers
+private char[] keys = new char[4]; // high 16 bits of the values in each container, ascending
+private int[] cards = new int[4]; // number of values in each container
+private char[][] arrays = new char[4][]; // low 16 bits, ascending, while the container is sparse
+private long[][] words = new long[4][]; // low 16 bits as bits, once the container is dense
+
+
+// the position of the container of key, or (-(insertion point) - 1)
+private int indexOf(char key) {
+  if (size > 0 && keys[size - 1] == key) return size - 1;
+  return Arrays.binarySearch(keys, 0, size, key);
+}
+
+
+// it inserts an empty (array) container for key at position i
+private void insertContainer(int i, char key) {
+  if (size == keys.length) {
+    int n = Math.max(4, size * 2);
+    keys = Arrays.copyOf(keys, n);
+    cards = Arrays.copyOf(cards, n);
+    arrays = Arrays.copyOf(arrays, n);
+    words = Arrays.copyOf(words, n);
+  }
+  System.arraycopy(keys, i, keys, i + 1, size - i);
+  System.arraycopy(cards, i, cards, i + 1, size - i);
+  System.arraycopy(arrays, i, arrays, i + 1, size - i);
+  System.arraycopy(words, i, words, i + 1, size - i);
+  keys[i] = key;
+  cards[i] = 0;
+  arrays[i] = new char[4];
+  words[i] = null;
+  size++;
+}
+
+
+// it appends a container to a bitmap being built in ascending key order
+private void append(char key, int card, char[] a, long[] w) {
+  if (card == 0) return;
+  insertContainer(size, key);
+  cards[size - 1] = card;
+  arrays[size - 1] = a;
+  words[size - 1] = w;
+}
+
+
+private static long[] toWords(char[] a, int card) {
+  long[] w = new long[WORDS];
+  for (int i = 0; i < card; i++)
+    w[a[i] >>> 6] |= 1L << a[i];
+  return w;
+}
+
+
+private static char[] toArray(long[] w, int card) {
+  char[] a = new char[card];
+  int k = 0;
+  long t;
+  for (int i = 0; i < WORDS; i++)
+    for (t = w[i]; t != 0; t &= t - 1)
+      a[k++] = (char)(i << 6 | Long.numberOfTrailingZeros(t));
+  return a;
+}
+
+
+/**
+ * It adds v, unless it is there already.
+ */
+void add(int v) {
+  char key = (char)(v >>> 16), low = (char)v;
+  int j, i = indexOf(key);
+  if (i < 0) {
+    i = -i - 1;
+    insertContainer(i, key);
+  }
+  if (words[i] != null) {
+    if ((words[i][low >>> 6] & 1L << low) == 0) {
+      words[i][low >>> 6] |= 1L << low;
+      cards[i]++;
+    }
+    return;
+  }
+  if (cards[i] > 0 && arrays[i][cards[i] - 1] < low) {
+    j = cards[i]; // appending in order
+  } else {
+    j = Arrays.binarySearch(arrays[i], 0, cards[i], low);
+    if (j >= 0) return;
+    j = -j - 1;
+  }
+  if (cards[i] == ARRAY_MAX) {
+    words[i] = toWords(arrays[i], cards[i]);
+    arrays[i] = null;
+    words[i][low >>> 6] |= 1L << low;
+    cards[i]++;
+    return;
+  }
+  if (cards[i] == arrays[i].length)
+    arrays[i] = Arrays.copyOf(arrays[i], Math.min(ARRAY_MAX, cards[i] * 2));
+  System.arraycopy(arrays[i], j, arrays[i], j + 1, cards[i] - j);
+  arrays[i][j] = low;
+  cards[i]++;
+}
+
+
+boolean contains(int v) {
+  char low = (char)v;
+  int i = indexOf((char)(v >>> 16));
+  if (i < 0) return false;
+  if (words[i] != null) return (words[i][low >>> 6] & 1L << low) != 0;
+  return Arrays.binarySearch(arrays[i], 0, cards[i], low) >= 0;
+}
+
+
+int cardinality() {
+  int res = 0;
+  for (int i = 0; i < size; i++)
+    res += cards[i];
+  return res;
+}
+
+
+boolean isEmpty() {
+  return size == 0;
+}
+
+
+// number of values in both sorted arrays
+private static int andCard(char[] a, int na, char[] b, int nb) {
+  int i = 0, j = 0, res = 0;
+  while (i < na && j < nb)
+    if (a[i] < b[j]) i++;
+    else if (a[i] > b[j]) j++;
+    else {
+      res++;
+      i++;
+      j++;
+    }
+  return res;
+}
+
+
+private static int andCard(char[] a, int na, long[] w) {
+  int res = 0;
+  for (int i = 0; i < na; i++)
+    if ((w[a[i] >>> 6] & 1L << a[i]) != 0) res++;
+  return res;
+}
+
+
+private static int andCard(long[] w1, long[] w2) {
+  int res = 0;
+  for (int i = 0; i < WORDS; i++)
+    res += Long.bitCount(w1[i] & w2[i]);
+  return res;
+}
+
+
+/**
+ * @return The number of values in both this and b, without building their intersection.
+ */
+int andCardinality(IntBitmap b) {
+  int i = 0, j = 0, res = 0;
+  while (i < size && j < b.size)
+    if (keys[i] < b.keys[j]) i++;
+    else if (keys[i] > b.keys[j]) j++;
+    else {
+      if (words[i] != null && b.words[j] != null) res += andCard(words[i], b.words[j]);
+      else if (words[i] != null) res += andCard(b.arrays[j], b.cards[j], words[i]);
+      else if (b.words[j] != null) res += andCard(arrays[i], cards[i], b.words[j]);
+      else res += andCard(arrays[i], cards[i], b.arrays[j], b.cards[j]);
+      i++;
+      j++;
+    }
+  return res;
+}
+
+
+/**
+ * @return The values in both this and b.
+ */
+IntBitmap and(IntBitmap b) {
+  IntBitmap res = new IntBitmap();
+  char[] a;
+  long[] w;
+  int i = 0, j = 0, k, n, c;
+  while (i < size && j < b.size)
+    if (keys[i] < b.keys[j]) i++;
+    else if (keys[i] > b.keys[j]) j++;
+    else {
+      if (words[i] != null && b.words[j] != null) {
+        w = new long[WORDS];
+        for (k = 0, c = 0; k < WORDS; k++) {
+          w[k] = words[i][k] & b.words[j][k];
+          c += Long.bitCount(w[k]);
+        }
+        if (c > ARRAY_MAX) res.append(keys[i], c, null, w);
+        else res.append(keys[i], c, toArray(w, c), null);
+      } else {
+        // at least one side is sparse: the result is no larger than it
+        char[] sa = words[i] == null ? arrays[i] : b.arrays[j];
+        int sn = words[i] == null ? cards[i] : b.cards[j];
+        a = new char[sn];
+        n = 0;
+        if (words[i] == null && b.words[j] == null) {
+          for (k = 0, c = 0; k < cards[i] && c < b.cards[j];)
+            if (arrays[i][k] < b.arrays[j][c]) k++;
+            else if (arrays[i][k] > b.arrays[j][c]) c++;
+            else {
+              a[n++] = arrays[i][k++];
+              c++;
+            }
+        } else {
+          w = words[i] == null ? b.words[j] : words[i];
+          for (k = 0; k < sn; k++)
+            if ((w[sa[k] >>> 6] & 1L << sa[k]) != 0) a[n++] = sa[k];
+        }
+        res.append(keys[i], n, Arrays.copyOf(a, n), null);
+      }
+      i++;
+      j++;
+    }
+  return res;
+}
+
+
+// a copy of container i, as a bitmap
+private long[] wordsOf(int i) {
+  return words[i] != null ? Arrays.copyOf(words[i], WORDS) : toWords(arrays[i], cards[i]);
+}
+
+
+/**
+ * @return The values in this or b (or both).
+ */
+IntBitmap or(IntBitmap b) {
+  IntBitmap res = new IntBitmap();
+  char[] a;
+  long[] w;
+  int i = 0, j = 0, k, c, n;
+  while (i < size || j < b.size)
+    if (j == b.size || i < size && keys[i] < b.keys[j]) {
+      res.append(keys[i], cards[i], arrays[i] == null ? null : Arrays.copyOf(arrays[i], cards[i]),
+          words[i] == null ? null : Arrays.copyOf(words[i], WORDS));
+      i++;
+    } else if (i == size || keys[i] > b.keys[j]) {
+      res.append(b.keys[j], b.cards[j], b.arrays[j] == null ? null : Arrays.copyOf(b.arrays[j],
+          b.cards[j]), b.words[j] == null ? null : Arrays.copyOf(b.words[j], WORDS));
+      j++;
+    } else {
+      if (words[i] == null && b.words[j] == null && cards[i] + b.cards[j] <= ARRAY_MAX) {
+        a = new char[cards[i] + b.cards[j]];
+        for (k = 0, c = 0, n = 0; k < cards[i] || c < b.cards[j];)
+          if (c == b.cards[j] || k < cards[i] && arrays[i][k] < b.arrays[j][c])
+            a[n++] = arrays[i][k++];
+          else if (k == cards[i] || arrays[i][k] > b.arrays[j][c])
+            a[n++] = b.arrays[j][c++];
+          else {
+            a[n++] = arrays[i][k++];
+            c++;
+          }
+        res.append(keys[i], n, Arrays.copyOf(a, n), null);
+      } else {
+        w = wordsOf(i);
+        if (b.words[j] != null) for (k = 0; k < WORDS; k++)
+          w[k] |= b.words[j][k];
+        else for (k = 0; k < b.cards[j]; k++)
+          w[b.arrays[j][k] >>> 6] |= 1L << b.arrays[j][k];
+        for (k = 0, c = 0; k < WORDS; k++)
+          c += Long.bitCount(w[k]);
+        if (c > ARRAY_MAX) res.append(keys[i], c, null, w);
+        else res.append(keys[i], c, toArray(w, c), null);
+      }
+      i++;
+      j++;
+    }
+  return res;
+}
+
+
+/**
+ * @return The union of the given bitmaps (none of which is changed).
+ */
+static IntBitmap union(IntBitmap... bs) {
+  IntBitmap res = new IntBitmap();
+  for (IntBitmap b : bs)
+    res = res.or(b);
+  return res;
+}
+
+
+/**
+ * @return The values, in ascending order.
+ */
+int[] toArray() {
+  int[] res = new int[cardinality()];
+  int i, k, n = 0, high;
+  long t;
+  for (i = 0; i < size; i++) {
+    high = keys[i] << 16;
+    if (words[i] == null) {
+      for (k = 0; k < cards[i]; k++)
+        res[n++] = high | arrays[i][k];
+    } else {
+      for (k = 0; k < WORDS; k++)
+        for (t = words[i][k]; t != 0; t &= t - 1)
+          res[n++] = high | k << 6 | Long.numberOfTrailingZeros(t);
+    }
+  }
+  return res;
+}
+
+
+void trimToSize() {
+  for (int i = 0; i < size; i++)
+    if (arrays[i] != null && arrays[i].length > cards[i]) arrays[i] = Arrays.copyOf(arrays[i], cards[i]);
+  keys = Arrays.copyOf(keys, size);
+  cards = Arrays.copyOf(cards, size);
+  arrays = Arrays.copyOf(arrays, size);
+  words = Arrays.copyOf(words, size);
+}
+
+
+/**
+ * It writes the containers: their number, then for each its key, its cardinality (less 1) and
+ * either its sorted low bits or its 1024 words.
+ */
+void writeExternal(ObjectOutput out) throws IOException {
+  int i, k;
+  out.writeInt(size);
+  for (i = 0; i < size; i++) {
+    out.writeChar(keys[i]);
+    out.writeChar(cards[i] - 1);
+    if (words[i] == null) {
+      for (k = 0; k < cards[i]; k++)
+        out.writeChar(arrays[i][k]);
+    } else {
+      for (k = 0; k < WORDS; k++)
+        out.writeLong(words[i][k]);
+    }
+  }
+}
+
+
+/**
+ * @return A bitmap as written by {@link #writeExternal}.
+ */
+static IntBitmap readExternal(ObjectInput in) throws IOException {
+  IntBitmap res = new IntBitmap();
+  char key, a[];
+  long[] w;
+  int i, k, card, n = in.readInt();
+  for (i = 0; i < n; i++) {
+    key = in.readChar();
+    card = in.readChar() + 1;
+    if (card <= ARRAY_MAX) {
+      a = new char[card];
+      for (k = 0; k < card; k++)
+        a[k] = in.readChar();
+      res.append(key, card, a, null);
+    } else {
+      w = new long[WORDS];
+      for (k = 0; k < WORDS; k++)
+        w[k] = in.readLong();
+      res.append(key, card, null, w);
+    }
+  }
+  res.trimToSize();
+  return res;
+}
+
+}
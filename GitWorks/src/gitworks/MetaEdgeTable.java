@@ -0,0 +1,202 @@
+package gitworks;
+
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+
+
+/**
+ * Features of the metaedges of a metagraph, computed in a single pass and kept as primitives, one
+ * row per metaedge (in the order of the dags and of their metaedges): the number of authors of the
+ * internal commits, of the structural (first and last) commits and of both, the line and file mods
+ * of the internal commits and the number of internal commits.<br>
+ * Authors and commits are numbered, thus the same features of a set of metaedges (e.g. a motif
+ * occurrence) are aggregated over rows without going back to the commits. The aggregations share
+ * scratch arrays: a table is meant to be used by one thread at a time.
+ */
+class MetaEdgeTable {
+
+private int[] rowOf; // by metaedge ID, -1 for none
+int[] ids; // metaedge ID by row
+int[] intlAuthors;
+int[] extAuthors;
+int[] bothAuthors; // structural authors who also authored internal commits
+int[] lineMods;
+int[] fileMods;
+int[] intlCommits;
+
+private int numAuthors;
+private int[][] authors; // by row, the ids of the authors of the internal commits
+private int[][] ext; // by row, the ids of the authors of the first and last commits
+private int[][] commits; // by row, the ids (as in allCommits) of the first and last commits or -1
+private int[] intlMark, extMark, comMark; // scratch: == stamp if counted already
+private int stamp = 0;
+private int[] extSeen = new int[16];
+
+
+MetaEdgeTable(MetaGraph mg) {
+  HashMap<String, Integer> authorIds = new HashMap<String, Integer>();
+  Iterator<MetaEdge> mIt;
+  MetaEdge me;
+  Integer a;
+  int n = 0, maxId = -1, r, i, k;
+  int[] au;
+  for (Commit c : mg.allCommits) {
+    a = authorIds.get(c.getAuthor().getUniqueID());
+    if (a == null) authorIds.put(c.getAuthor().getUniqueID(), authorIds.size());
+  }
+  numAuthors = authorIds.size();
+  for (Dag d : mg.dags) {
+    n += d.getNumMetaEdges();
+    mIt = d.getMetaEdges();
+    while (mIt.hasNext())
+      maxId = Math.max(maxId, mIt.next().ID);
+  }
+  rowOf = new int[maxId + 1];
+  Arrays.fill(rowOf, -1);
+  ids = new int[n];
+  intlAuthors = new int[n];
+  extAuthors = new int[n];
+  bothAuthors = new int[n];
+  lineMods = new int[n];
+  fileMods = new int[n];
+  intlCommits = new int[n];
+  authors = new int[n][];
+  ext = new int[n][];
+  commits = new int[n][];
+  intlMark = new int[numAuthors];
+  extMark = new int[numAuthors];
+  comMark = new int[mg.allCommits.size()];
+  r = 0;
+  for (Dag d : mg.dags) {
+    mIt = d.getMetaEdges();
+    while (mIt.hasNext()) {
+      me = mIt.next();
+      ids[r] = me.ID;
+      rowOf[me.ID] = r;
+      intlCommits[r] = me.getWeight();
+      au = new int[me.getWeight()];
+      k = 0;
+      if (me.getWeight() > 0) for (Commit c : me.getInternals()) {
+        au[k++] = authorIds.get(c.getAuthor().getUniqueID());
+        lineMods[r] += c.mLines;
+        fileMods[r] += c.mFiles;
+      }
+      Arrays.sort(au);
+      for (i = 0, k = 0; i < au.length; i++)
+        if (i == 0 || au[i] != au[i - 1]) au[k++] = au[i];
+      authors[r] = Arrays.copyOf(au, k);
+      intlAuthors[r] = k;
+      i = authorIds.get(me.first.getAuthor().getUniqueID());
+      k = authorIds.get(me.last.getAuthor().getUniqueID());
+      ext[r] = i == k ? new int[] {i} : new int[] {i, k};
+      extAuthors[r] = ext[r].length;
+      for (int x : ext[r])
+        if (Arrays.binarySearch(authors[r], x) >= 0) bothAuthors[r]++;
+      i = Commit.indexOf(mg.allCommits, me.first);
+      k = Commit.indexOf(mg.allCommits, me.last);
+      commits[r] = new int[] {Math.max(i, -1), Math.max(k, -1)};
+      r++;
+    }
+  }
+}
+
+
+int size() {
+  return ids.length;
+}
+
+
+/**
+ * @return The row of the metaedge with the given ID, -1 if it is not in this table.
+ */
+int getRow(int id) {
+  return id >= 0 && id < rowOf.length ? rowOf[id] : -1;
+}
+
+
+/**
+ * @return The number of distinct authors in the metagraph.
+ */
+int getNumAuthors() {
+  return numAuthors;
+}
+
+
+private void nextStamp() {
+  if (++stamp == 0) { // wrapped around: old marks could collide
+    Arrays.fill(intlMark, 0);
+    Arrays.fill(extMark, 0);
+    Arrays.fill(comMark, 0);
+    stamp = 1;
+  }
+}
+
+
+/**
+ * @return The number of distinct authors of commits in the metaedges: first the authors of internal
+ *         commits, then the authors of structural commits, then the authors of structural commits
+ *         that are also authors of internal commits.
+ */
+int[] getAuthors(MetaEdge[] edges) {
+  int intl = 0, ne = 0, both = 0, r;
+  nextStamp();
+  for (MetaEdge me : edges) {
+    r = rowOf[me.ID];
+    for (int a : authors[r])
+      if (intlMark[a] != stamp) {
+        intlMark[a] = stamp;
+        intl++;
+      }
+    for (int a : ext[r])
+      if (extMark[a] != stamp) {
+        extMark[a] = stamp;
+        if (ne == extSeen.length) extSeen = Arrays.copyOf(extSeen, ne * 2);
+        extSeen[ne++] = a;
+      }
+  }
+  for (int i = 0; i < ne; i++)
+    if (intlMark[extSeen[i]] == stamp) both++;
+  return new int[] {intl, ne, both};
+}
+
+
+/**
+ * @param allCommits
+ *          If true, the result accounts for the first and last node of the metaedges; otherwise,
+ *          only internal commits are considered.
+ * @return The number of distinct commits in the metaedges.
+ */
+int getCommits(MetaEdge[] edges, boolean allCommits) {
+  int res = 0, r;
+  nextStamp();
+  for (MetaEdge me : edges) {
+    r = rowOf[me.ID];
+    res += intlCommits[r];
+    if (allCommits) for (int c : commits[r])
+      if (c >= 0 && comMark[c] != stamp) {
+        comMark[c] = stamp;
+        res++;
+      }
+  }
+  return res;
+}
+
+
+/**
+ * @return The number of mods in the internal commits of the metaedges: first the sum of line mods,
+ *         then the sum of file mods.
+ */
+int[] getMods(MetaEdge[] edges) {
+  int[] res = new int[] {0, 0};
+  int r;
+  for (MetaEdge me : edges) {
+    r = rowOf[me.ID];
+    res[0] += lineMods[r];
+    res[1] += fileMods[r];
+  }
+  return res;
+}
+
+}
@@ -5,11 +5,14 @@ import java.io.Externalizable;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectOutput;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.Set;
 
 import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 import org.eclipse.jgit.lib.ObjectId;
@@ -37,7 +40,11 @@ public static enum DagType {
 private int maxID;
 
 ArrayList<Commit> allCommits;
+private CommitIndex commitIndex; // lookup of allCommits, only while the metagraph is being built
 ArrayList<Dag> dags;
+// for each edge ID, the dag containing that edge and the edge itself (null if there is no such edge)
+private Dag[] dagOf;
+private MetaEdge[] edgeOf;
 long since;
 long until;
 private int diameter; // the number of metaedges in the longest path from the oldest root
@@ -49,6 +56,8 @@ private MetaGraph() {
   maxID = 0;
   allCommits = new ArrayList<Commit>();
   dags = new ArrayList<Dag>();
+  dagOf = new Dag[16];
+  edgeOf = new MetaEdge[16];
   since = Long.MAX_VALUE;
   until = 0L;
   diameter = -1;
@@ -61,6 +70,8 @@ public MetaGraph(ArrayList<Commit> all) {
   maxID = 0;
   allCommits = all;
   dags = new ArrayList<Dag>();
+  dagOf = new Dag[16];
+  edgeOf = new MetaEdge[16];
   since = Long.MAX_VALUE;
   until = 0L;
   diameter = -1;
@@ -97,10 +108,34 @@ int getMaxDensity() {
 
 
 MetaEdge getEdge(int id) {
-  MetaEdge res = null;
-  for (Dag d : dags) {
-    res = d.getEdge(id);
-    if (res != null) break;
+  return id >= 0 && id < edgeOf.length ? edgeOf[id] : null;
+}
+
+
+// it must be called whenever an edge is added to a dag of this metagraph (or to be added to it)
+private void indexEdge(Dag d, MetaEdge me) {
+  if (me.ID >= dagOf.length) {
+    int size = Math.max(me.ID + 1, dagOf.length * 2);
+    dagOf = Arrays.copyOf(dagOf, size);
+    edgeOf = Arrays.copyOf(edgeOf, size);
+  }
+  dagOf[me.ID] = d;
+  edgeOf[me.ID] = me;
+}
+
+
+private void indexDag(Dag d) {
+  Iterator<MetaEdge> mIt = d.getMetaEdges();
+  while (mIt.hasNext())
+    indexEdge(d, mIt.next());
+}
+
+
+private MetaEdge removeEdge(Dag d, int id) {
+  MetaEdge res = d.removeEdge(id);
+  if (res != null) {
+    dagOf[id] = null;
+    edgeOf[id] = null;
   }
   return res;
 }
@@ -224,13 +259,14 @@ static MetaGraph createMetaGraph(Dag d) {
   }
   for (Commit c : d.roots) {
     GitWorks.addUnique(coms, c);
-    since = Math.min(since, c.getCommittingInfo().getWhen().getTime());
-    until = Math.max(until, c.getCommittingInfo().getWhen().getTime());
+    since = Math.min(since, c.getCommitTime());
+    until = Math.max(until, c.getCommitTime());
   }
 
   MetaGraph res = new MetaGraph(coms);
   res.maxID = maxID;
   res.dags.add(d);
+  res.indexDag(d);
   res.since = since;
   res.until = until;
   res.diameter = d.getDiameter();
@@ -241,7 +277,7 @@ static MetaGraph createMetaGraph(Dag d) {
 }
 
 
-private static boolean union(Dag dest, Dag d) {
+private boolean union(Dag dest, Dag d) {
   if (dest == d) return false;
   int tot = dest.getNumCommits() + d.getNumCommits();
   for (Commit c : d.leaves)
@@ -250,9 +286,13 @@ private static boolean union(Dag dest, Dag d) {
     GitWorks.addUnique(dest.roots, c);
   for (Commit c : d.nodes)
     GitWorks.addUnique(dest.nodes, c);
+  MetaEdge me;
   Iterator<MetaEdge> mIt = d.getMetaEdges();
-  while (mIt.hasNext())
-    dest.addEdge(mIt.next());
+  while (mIt.hasNext()) {
+    me = mIt.next();
+    dest.addEdge(me);
+    indexEdge(dest, me);
+  }
   if (dest.getNumCommits() != tot)
     System.err.println("Dag : ERROR : something wrong while merging " + d.toString()
         + " into " + dest.toString());
@@ -272,6 +312,7 @@ private static boolean union(Dag dest, Dag d) {
  */
 static MetaGraph createMetaGraph(ArrayList<MetaEdge> allEdges, ArrayList<Commit> allComs,
     ArrayList<Commit> heads) {
+  int i, e;
   Dag d, d1;
   Commit co;
   MetaEdge me;
@@ -283,17 +324,22 @@ static MetaGraph createMetaGraph(ArrayList<MetaEdge> allEdges, ArrayList<Commit>
     d1 = null;
     do {
       co = cur.remove(0);
-      for (int e : co.edges) {
+      for (i = 0; i < co.edges.size(); i++) {
+        e = co.edges.get(i);
         me = GitWorks.getElement(allEdges, e);
         if (co.equals(me.first)) continue;
-        if (d1 == null) d1 = res.getDag(e);
+        if (d1 == null) {
+          d1 = res.getDag(e);
+          if (d1 == d) d1 = null; // only the dags already in res count
+        }
         if (d1 != null && d1 != d) {
-          union(d1, d);
+          res.union(d1, d);
           d = d1;
           break;
         } else {
           GitWorks.addUnique(cur, me.first);
           d.addEdge(me);
+          res.indexEdge(d, me);
           res.maxID = Math.max(res.maxID, me.ID);
         }
       }
@@ -327,32 +373,56 @@ static MetaGraph createMetaGraph(ArrayList<MetaEdge> allEdges, ArrayList<Commit>
  */
 static MetaGraph createMetaGraph(ArrayList<Commit> allComs, ArrayList<Commit> heads) {
   MetaGraph res = new MetaGraph(allComs);
+  res.addHeads(heads);
+  return res;
+}
+
+
+/**
+ * Add to the meta-graph the commits reachable from the given heads. On a meta-graph built out of
+ * a previous version of allCommits, only the commits added since then are considered (commits
+ * never change, so new commits can only descend from existing ones): existing metaedges are split
+ * or absorbed as needed and only the dags that change are visited again.
+ * 
+ * @param heads
+ *          All the branch heads, in the order they must be processed.
+ */
+void addHeads(ArrayList<Commit> heads) {
+  Set<Dag> old = Collections.newSetFromMap(new IdentityHashMap<Dag, Boolean>());
+  old.addAll(dags);
+  commitIndex = new CommitIndex(allCommits);
   for (Commit c : heads) {
     if (c.edges.isEmpty()) { // was not found in previous iterations
-      res.addHead(c);
+      addHead(c);
     }
   }
+  commitIndex = null; // allCommits may change from now on
+  Iterator<Commit> it;
+  for (Dag d : dags) {
+    if (old.contains(d)) continue;
+    it = d.leaves.iterator();
+    while (it.hasNext()) // former leaves that got children
+      if (it.next().outDegree > 0) it.remove();
+  }
   for (Commit c : heads) {
     if (c.inDegree > 0 && c.outDegree == 0) {
-      GitWorks.addUnique(res.getDag(c.edges.get(0)).leaves, c);
+      GitWorks.addUnique(getDag(c.edges.get(0)).leaves, c);
     }
   }
+  diameter = maxWidth = maxDensity = -1;
   long[][] ts;
-  for (Dag d : res.dags) {
+  for (Dag d : dags) {
+    if (old.contains(d)) continue;
     d.bfVisit();
     ts = d.getLayerTimes();
-    res.until = Math.max(res.until, ts[1][ts[1].length - 1]);
-    res.since = Math.min(res.since, ts[0][0]);
+    until = Math.max(until, ts[1][ts[1].length - 1]);
+    since = Math.min(since, ts[0][0]);
   }
-  return res;
 }
 
 
 private Dag getDag(int edgeId) {
-  for (Dag d : dags)
-    if (d.getEdge(edgeId) != null)
-      return d;
-  return null;
+  return edgeId >= 0 && edgeId < dagOf.length ? dagOf[edgeId] : null;
 }
 
 
@@ -365,6 +435,8 @@ private Dag getDag(int edgeId) {
  */
 MetaGraph buildSubGraph(Date minAge, Date maxAge) {
   MetaGraph res, subs[] = new MetaGraph[dags.size()];
+  Iterator<MetaEdge> mIt;
+  MetaEdge me;
   for (int i = 0; i < dags.size(); i++) {
     subs[i] = dags.get(i).buildSubGraph(minAge, maxAge);
   }
@@ -374,6 +446,13 @@ MetaGraph buildSubGraph(Date minAge, Date maxAge) {
     since = Math.min(since, m.since);
     until = Math.max(until, m.until);
     dags.addAll(m.dags);
+    for (Dag d : m.dags) {
+      mIt = d.getMetaEdges();
+      while (mIt.hasNext()) { // as with a scan of the dags, an ID in use keeps its earlier dag
+        me = mIt.next();
+        if (getDag(me.ID) == null) indexEdge(d, me);
+      }
+    }
     allCommits.addAll(m.allCommits);
   }
   Collections.sort(allCommits);
@@ -383,11 +462,11 @@ MetaGraph buildSubGraph(Date minAge, Date maxAge) {
 
 Dag getOldestDag() {
   int i, oIndx = 0;
-  java.util.Date cur, oldest = new java.util.Date(Long.MAX_VALUE);
+  long cur, oldest = Long.MAX_VALUE;
   for(i = 0; i < dags.size(); i++) {
     for (Commit c : dags.get(i).roots) {
-      cur = c.getCommittingInfo().getWhen();
-      if (cur.before(oldest)) {
+      cur = c.getCommitTime();
+      if (cur < oldest) {
         oldest = cur;
         oIndx = i;
       }
@@ -424,9 +503,10 @@ Dag getDensestDag() {
 
 
 private void absorbeEdge(Dag d, Commit c, MetaEdge me) {
-  MetaEdge curMe = d.removeEdge(c.edges.remove(0));
+  MetaEdge curMe = removeEdge(d, c.edges.remove(0));
   Commit c2;
   me.addInternal(c);
+  c.layer = -1; // it may have been a leaf of a visited dag
   for (int i = 0; i < curMe.getWeight(); i++) {
     c2 = curMe.getInternals().get(i);
     me.addInternal(c2);
@@ -434,9 +514,9 @@ private void absorbeEdge(Dag d, Commit c, MetaEdge me) {
     c2.edges.add(me.ID);
   }
   me.first = curMe.first;
-  me.first.edges.remove(Collections.binarySearch(me.first.edges, curMe.ID));
+  me.first.edges.remove(me.first.edges.indexOf(curMe.ID));
   me.first.edges.add(me.ID);
-  GitWorks.addUnique(c.edges, me.ID); // to make the procedure self-contained
+  c.edges.add(me.ID); // to make the procedure self-contained
 }
 
 
@@ -446,10 +526,11 @@ private void splitEdge(Dag d, Commit c, int newID) {
   me.first = c;
   newMe = new MetaEdge(newID);
   d.addEdge(newMe);
+  indexEdge(d, newMe);
   newMe.last = c;
   newMe.first = c2;
-  c2.edges.remove(Collections.binarySearch(c2.edges, me.ID));
-  GitWorks.addUnique(c2.edges, newMe.ID);
+  c2.edges.remove(c2.edges.indexOf(me.ID));
+  c2.edges.add(newMe.ID);
   int z = me.getInternals().indexOf(c);
   while (z < me.getWeight() - 1) {
     c2 = me.getInternals().remove(z + 1);
@@ -458,7 +539,7 @@ private void splitEdge(Dag d, Commit c, int newID) {
     c2.edges.add(newMe.ID);
   }
   me.getInternals().remove(z);
-  GitWorks.addUnique(c.edges, newMe.ID);
+  c.edges.add(newMe.ID);
 }
 
 
@@ -467,7 +548,7 @@ private Commit[] nextGen(Commit c) {
   Commit[] res;
   ArrayList<Commit> parents = new ArrayList<Commit>();
   for (ObjectId p : c.getParents()) {
-    pc = GitWorks.getElement(allCommits, p);
+    pc = commitIndex.get(p);
     if (pc != null)
       parents.add(pc);
   }
@@ -479,40 +560,40 @@ private Commit[] nextGen(Commit c) {
 }
 
 
+// it follows the chain of simple commits starting from c (iteratively, as chains can be as long as
+// the whole history), up to the commit which becomes the first of me
 private Commit[] addCommit(Dag d, Commit c, MetaEdge me) {
-  Commit[] parents;
-  Commit res[] = null;
+  Commit[] parents, res;
   c.outDegree++;
-  if (c.edges.isEmpty()) { // c has never been considered before
+  while (c.edges.isEmpty()) { // c has never been considered before
     parents = nextGen(c);
     c.inDegree = parents.length - 1;
-    if (c.inDegree == 0 || c.inDegree > 1)
-      me.first = c; // first commit of the repo or merge commit
-    else
-      me.addInternal(c);
-    if (c.inDegree == 1) { // simple commit: chain it with its parent
-      GitWorks.addUnique(c.edges, me.ID);
-      return addCommit(d, parents[1], me);
-    } else { // return the commit and its list of parents
-      res = parents;
-    }
-  } else { // c has already been considered in previous calls
-    Dag d1 = getDag(c.edges.get(0));
-    if (d1 == null) d1 = d;
-    if (c.outDegree == 1 && c.inDegree == 1) { // terminal commit: change it to internal
-      absorbeEdge(d1, c, me);
-    } else if (c.outDegree == 2 && c.inDegree == 1) {
-      // internal commit: change it to terminal
-      me.first = c;
-      splitEdge(d1, c, ++maxID);
-    } else { // branch commit or merge commit
+    if (c.inDegree != 1) { // first commit of the repo or merge commit
       me.first = c;
+      c.edges.add(me.ID);
+      return parents; // the commit and its list of parents
     }
-    if (union(d, d1))
-      dags.remove(dags.indexOf(d1));
-    res = new Commit[] {me.first};
+    me.addInternal(c); // simple commit: chain it with its parent
+    c.edges.add(me.ID);
+    c = parents[1];
+    c.outDegree++;
+  }
+  // c has already been considered in previous calls
+  Dag d1 = getDag(c.edges.get(0));
+  if (d1 == null) d1 = d;
+  if (c.outDegree == 1 && c.inDegree == 1) { // terminal commit: change it to internal
+    absorbeEdge(d1, c, me);
+  } else if (c.outDegree == 2 && c.inDegree == 1) {
+    // internal commit: change it to terminal
+    me.first = c;
+    splitEdge(d1, c, ++maxID);
+  } else { // branch commit or merge commit
+    me.first = c;
   }
-  GitWorks.addUnique(c.edges, me.ID);
+  if (union(d, d1))
+    dags.remove(dags.indexOf(d1));
+  res = new Commit[] {me.first};
+  c.edges.add(me.ID);
   return res;
 }
 
@@ -521,7 +602,7 @@ private Commit[] addCommit(Dag d, Commit c, MetaEdge me) {
 private void addHead(Commit c) {
   Commit[] p, cur;
   MetaEdge me; Commit co;
-  ArrayList<Commit[]> next = new ArrayList<Commit[]>();
+  ArrayDeque<Commit[]> next = new ArrayDeque<Commit[]>(); // commits whose parents are to be chained
   p = nextGen(c);
   Dag d = new Dag();
   // if c points the first commit of the repo, just return
@@ -537,13 +618,13 @@ private void addHead(Commit c) {
   }
   next.add(p);
   do {
-    cur = next.remove(0);
+    cur = next.poll();
     co = cur[0];
     co.inDegree = cur.length - 1;
     for (int i = 1; i < cur.length; i++) {
       me = new MetaEdge(++maxID);
       me.last = co;
-      GitWorks.addUnique(co.edges, me.ID);
+      co.edges.add(me.ID);
       p = addCommit(d, cur[i], me);
       if (p[0].inDegree == 0) {
         if (!dags.isEmpty()) {
@@ -559,6 +640,7 @@ private void addHead(Commit c) {
         GitWorks.addUnique(d.nodes, p[0]);
       }
       d.addEdge(me);
+      indexEdge(d, me);
       if (p.length > 1) {
         next.add(p);
       }
@@ -651,6 +733,7 @@ public void readExternal(ObjectInput in) throws IOException, ClassNotFoundExcept
         e.addInternal(allCommits.get(in.readInt()));
       if (e.getWeight() > 0) e.getInternals().trimToSize();
       d.addEdge(e);
+      indexEdge(d, e);
     }
     size = in.readInt();
     for (i = 0; i < size; i++) {
@@ -661,6 +744,7 @@ public void readExternal(ObjectInput in) throws IOException, ClassNotFoundExcept
       d.nodes.add(allCommits.get(in.readInt()));
     }
     d.checkup(false);
+    d.restoreDiameter();
   }
 }
 
@@ -680,7 +764,7 @@ public void writeExternal(ObjectOutput out) throws IOException {
     out.writeInt(d.roots.size());
     Iterator<Commit> itc = d.roots.iterator();
     while (itc.hasNext()) {
-      out.writeInt(Collections.binarySearch(allCommits, itc.next()));
+      out.writeInt(Commit.indexOf(allCommits, itc.next()));
     }
     out.writeInt(d.getNumMetaEdges());
     Iterator<MetaEdge> ite = d.getMetaEdges();
@@ -689,21 +773,21 @@ public void writeExternal(ObjectOutput out) throws IOException {
       out.writeInt(me.ID);
       out.writeLong(me.startTimestamp);
       out.writeLong(me.endTimestamp);
-      out.writeInt(Collections.binarySearch(allCommits, me.first));
-      out.writeInt(Collections.binarySearch(allCommits, me.last));
+      out.writeInt(Commit.indexOf(allCommits, me.first));
+      out.writeInt(Commit.indexOf(allCommits, me.last));
       out.writeInt(me.getWeight());
       if (me.getWeight() > 0) for (Commit c : me.getInternals())
-        out.writeInt(Collections.binarySearch(allCommits, c));
+        out.writeInt(Commit.indexOf(allCommits, c));
     }
     out.writeInt(d.leaves.size());
     itc = d.leaves.iterator();
     while (itc.hasNext()) {
-      out.writeInt(Collections.binarySearch(allCommits, itc.next()));
+      out.writeInt(Commit.indexOf(allCommits, itc.next()));
     }
     out.writeInt(d.nodes.size());
     itc = d.nodes.iterator();
     while (itc.hasNext()) {
-      out.writeInt(Collections.binarySearch(allCommits, itc.next()));
+      out.writeInt(Commit.indexOf(allCommits, itc.next()));
     }
   }
   out.flush();
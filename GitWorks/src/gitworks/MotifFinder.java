@@ -0,0 +1,453 @@
+package gitworks;
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
+
+
+/**
+ * In-process search of the polygons of a metagraph, as gitPatternFinder.jar does: a polygon is a
+ * chordless cycle of 3 to 10 terminal commits in the simple graph of the metagraph (parallel
+ * metaedges count once). Its metaedges form alternating paths from a source to a sink commit, and
+ * the lengths of those paths, read around the cycle, tell which template it matches. Templates are
+ * named and numbered as gitPatternFinder.jar does (e.g. "tri1", "tetra1" ... "tetra3", ...).<br>
+ * The search runs directly on the adjacency of each dag: each polygon is found once, starting from
+ * its smallest terminal, thus the start commits of a dag are split into chunks which run in
+ * parallel, and the polygons are then put together as motifs in a fixed order.
+ */
+class MotifFinder {
+
+static final int MAX_NODES = 10;
+
+private static final String[] polygNames = {"tri", "tetra", "penta", "exa", "epta", "octa",
+    "enna", "deca"};
+
+// for each polygon size, the multisets of lengths of its paths (as gitPatternFinder.jar lists them)
+private static final int[][][] polygPathLengths = {
+  {{2, 1}},
+  {{2, 2}, {3, 1}, {1, 1, 1, 1}},
+  {{3, 2}, {4, 1}, {1, 1, 1, 2}},
+  {{3, 3}, {5, 1}, {2, 4}, {1, 1, 1, 3}, {1, 1, 2, 2}, {1, 1, 1, 1, 1, 1}},
+  {{6, 1}, {5, 2}, {4, 3}, {1, 1, 1, 4}, {1, 1, 2, 3}, {1, 2, 2, 2}, {1, 1, 1, 1, 1, 1, 2}},
+  {{1, 7}, {2, 6}, {3, 5}, {4, 4}, {1, 1, 1, 5}, {1, 1, 2, 4}, {1, 1, 3, 3}, {1, 2, 2, 3},
+    {1, 1, 1, 1, 1, 3}, {1, 1, 1, 1, 2, 2}, {1, 1, 1, 1, 1, 1, 1, 1}},
+  {{8, 1}, {7, 2}, {6, 3}, {5, 4}, {1, 1, 1, 6}, {1, 1, 2, 5}, {1, 1, 3, 4}, {1, 2, 2, 4},
+    {1, 2, 3, 3}, {1, 1, 1, 1, 1, 4}, {1, 1, 1, 1, 2, 3}, {1, 1, 1, 2, 2, 2},
+    {1, 1, 1, 1, 1, 1, 1, 2}},
+  {{1, 9}, {2, 8}, {3, 7}, {4, 6}, {5, 5}, {1, 1, 1, 7}, {1, 1, 2, 6}, {1, 1, 3, 5},
+    {1, 1, 4, 4}, {1, 2, 2, 5}, {1, 2, 3, 4}, {1, 3, 3, 3}, {1, 1, 1, 1, 1, 5},
+    {1, 1, 1, 1, 2, 4}, {1, 1, 1, 1, 3, 3}, {1, 1, 1, 2, 2, 3}, {1, 1, 1, 1, 1, 1, 1, 3},
+    {1, 1, 1, 1, 1, 1, 2, 2}, {1, 1, 1, 1, 1, 1, 1, 1, 1, 1}}};
+
+static final String[] templateNames; // by template id
+static final int[] templateSizes; // number of nodes (and edges) of each template
+private static final HashMap<Long, Integer> templateIds; // first template id by canonical key
+// the next template with the same key, or -1: gitPatternFinder.jar turns the odd list of epta into
+// 8 node templates (its first and last paths go the same way), which are octa templates as well
+private static final int[] templateAlias;
+
+static {
+  ArrayList<String> names = new ArrayList<String>();
+  ArrayList<Integer> sizes = new ArrayList<Integer>();
+  ArrayList<Integer> aliases = new ArrayList<Integer>();
+  ArrayList<int[]> perms = new ArrayList<int[]>();
+  HashSet<Long> seen = new HashSet<Long>(); // keys of the current polygon size
+  HashMap<Long, Integer> lastIds = new HashMap<Long, Integer>();
+  Integer prev;
+  Long k;
+  int found, len, m;
+  int[] q;
+  templateIds = new HashMap<Long, Integer>();
+  for (int n = 0; n < polygNames.length; n++) {
+    found = 0;
+    seen.clear();
+    for (int[] lengths : polygPathLengths[n]) {
+      perms.clear();
+      permute(perms, Arrays.copyOf(lengths, lengths.length), lengths.length);
+      for (int[] p : perms) { // the first arrangement of each template names it
+        len = p.length;
+        if (len % 2 == 1) { // the last path goes on with the first one
+          q = Arrays.copyOf(p, len - 1);
+          q[0] += p[len - 1];
+          p = q;
+          len--;
+        }
+        k = canonicalKey(p, len);
+        if (!seen.add(k)) continue;
+        prev = lastIds.put(k, names.size());
+        if (prev == null) templateIds.put(k, names.size());
+        else aliases.set(prev, names.size());
+        aliases.add(-1);
+        names.add(polygNames[n] + (++found));
+        m = 0;
+        for (int l : p)
+          m += l;
+        sizes.add(m);
+      }
+    }
+  }
+  templateNames = names.toArray(new String[0]);
+  templateSizes = new int[sizes.size()];
+  templateAlias = new int[sizes.size()];
+  for (int i = 0; i < templateSizes.length; i++) {
+    templateSizes[i] = sizes.get(i);
+    templateAlias[i] = aliases.get(i);
+  }
+}
+
+
+// Heap's algorithm, in the same order as gitPatternFinder.jar
+private static void permute(ArrayList<int[]> res, int[] a, int k) {
+  int t;
+  if (k == 1) {
+    res.add(Arrays.copyOf(a, a.length));
+    return;
+  }
+  for (int i = 0; i < k; i++) {
+    permute(res, a, k - 1);
+    t = a[k % 2 == 1 ? 0 : i];
+    a[k % 2 == 1 ? 0 : i] = a[k - 1];
+    a[k - 1] = t;
+  }
+}
+
+
+/**
+ * The same key for all the readings of a polygon: p[0 .. n - 1] are the lengths of its paths,
+ * starting from a source commit and going around the cycle either way.
+ */
+static long canonicalKey(int[] p, int n) {
+  long code, res = Long.MAX_VALUE;
+  int r, i;
+  for (r = 0; r < n; r += 2) { // from each source, both ways
+    code = 0L;
+    for (i = 0; i < n; i++)
+      code = code << 4 | p[(r + i) % n];
+    res = Math.min(res, code);
+    code = 0L;
+    for (i = 0; i < n; i++)
+      code = code << 4 | p[(r - i - 1 + 2 * n) % n];
+    res = Math.min(res, code);
+  }
+  return res;
+}
+
+
+/**
+ * Simple undirected graph of the terminal commits of a dag, where each link keeps the direction
+ * of the metaedge(s) it stands for.
+ */
+static class Adjacency {
+
+int[][] nbr; // for each node, its neighbours in ascending order
+boolean[][] fwd; // whether each link goes from the node to the neighbour
+MetaEdge[][] edge; // the metaedge with the smallest ID behind each link (if built from a dag)
+
+
+Adjacency(int[][] nbr, boolean[][] fwd) {
+  this.nbr = nbr;
+  this.fwd = fwd;
+}
+
+
+Adjacency(Dag d) {
+  int t, i, k, deg, n = d.getNumTerminals();
+  long[] order;
+  int[] nb;
+  MetaEdge[] me;
+  nbr = new int[n][];
+  fwd = new boolean[n][];
+  edge = new MetaEdge[n][];
+  for (t = 0; t < n; t++) {
+    deg = d.getOutDegree(t) + d.getInDegree(t);
+    order = new long[deg];
+    nb = new int[deg];
+    me = new MetaEdge[deg];
+    for (i = 0; i < d.getOutDegree(t); i++) {
+      nb[i] = d.getChild(t, i);
+      me[i] = d.getOutEdge(t, i);
+    }
+    for (k = 0; k < d.getInDegree(t); k++, i++) {
+      nb[i] = d.getParent(t, k);
+      me[i] = d.getInEdge(t, k);
+    }
+    for (i = 0; i < deg; i++) // parallel metaedges come in ID order: the first one is kept
+      order[i] = (long)nb[i] << 32 | i;
+    Arrays.sort(order);
+    for (i = 0, k = 0; i < deg; i++)
+      if (i == 0 || order[i] >>> 32 != order[i - 1] >>> 32) order[k++] = order[i];
+    nbr[t] = new int[k];
+    fwd[t] = new boolean[k];
+    edge[t] = new MetaEdge[k];
+    for (i = 0; i < k; i++) {
+      nbr[t][i] = (int)(order[i] >>> 32);
+      fwd[t][i] = (int)order[i] < d.getOutDegree(t);
+      edge[t][i] = me[(int)order[i]];
+    }
+  }
+}
+
+
+int size() {
+  return nbr.length;
+}
+
+
+// whether the link between u and its neighbour v goes from u to v
+private boolean goesTo(int u, int v) {
+  return fwd[u][Arrays.binarySearch(nbr[u], v)];
+}
+
+
+MetaEdge getEdge(int u, int v) {
+  return edge[u][Arrays.binarySearch(nbr[u], v)];
+}
+
+
+/**
+ * @return The id of the template matched by the cycle c[0 .. n - 1], or -1 if there is none
+ *         (gitPatternFinder.jar lacks some, e.g. the epta with paths 1, 1, 1, 1, 1, 2).
+ */
+int classify(int[] c, int n) {
+  int i, s = 0, runs = 0;
+  int[] p = new int[n];
+  boolean[] dir = new boolean[n];
+  for (i = 0; i < n; i++) {
+    dir[i] = goesTo(c[i], c[(i + 1) % n]);
+    if (i > 0 && dir[i] && !dir[i - 1]) s = i; // a source
+  }
+  if (dir[0] && !dir[n - 1]) s = 0;
+  for (i = 0; i < n; i++) {
+    if (i > 0 && dir[(s + i) % n] != dir[(s + i - 1) % n]) runs++;
+    p[runs]++;
+  }
+  Integer t = templateIds.get(canonicalKey(p, runs + 1));
+  return t == null ? -1 : t;
+}
+
+}
+
+
+/**
+ * The polygons of an adjacency whose smallest node is in [from, to).
+ */
+static class Search implements Callable<ArrayList<int[]>> {
+
+private Adjacency g;
+private int from, to;
+private int[] path = new int[MAX_NODES];
+private int[] blocked; // how many internal nodes of the path each node is adjacent to
+private boolean[] onPath;
+private boolean[] nearStart; // adjacent to path[0]
+private ArrayList<int[]> found; // {template, nodes...} for each polygon
+private long[] counts; // number of polygons by template, if they are only counted
+
+
+Search(Adjacency g, int from, int to) {
+  this.g = g;
+  this.from = from;
+  this.to = to;
+}
+
+
+@Override
+public ArrayList<int[]> call() {
+  found = new ArrayList<int[]>();
+  run();
+  return found;
+}
+
+
+/**
+ * It adds to counts[i] the number of polygons matching the i-th template.
+ */
+void count(long[] counts) {
+  this.counts = counts;
+  run();
+  this.counts = null;
+}
+
+
+private void run() {
+  blocked = new int[g.size()];
+  onPath = new boolean[g.size()];
+  nearStart = new boolean[g.size()];
+  for (int s = from; s < to; s++) {
+    path[0] = s;
+    onPath[s] = true;
+    for (int x : g.nbr[s])
+      nearStart[x] = true;
+    extend(1);
+    for (int x : g.nbr[s])
+      nearStart[x] = false;
+    onPath[s] = false;
+  }
+  blocked = null;
+  onPath = null;
+  nearStart = null;
+}
+
+
+// path[0 .. k - 1] is a chordless path: it tries all the ways to go on from its last node
+private void extend(int k) {
+  int w, t, last = path[k - 1];
+  int[] c;
+  for (int i = 0; i < g.nbr[last].length; i++) {
+    w = g.nbr[last][i];
+    if (w <= path[0] || onPath[w] || blocked[w] > 0) continue;
+    if (k > 1 && nearStart[w]) { // w closes a cycle, and it cannot go any further
+      if (path[1] > w) continue; // each cycle is found both ways: one is enough
+      path[k] = w;
+      t = g.classify(path, k + 1);
+      if (t < 0) continue;
+      if (counts != null) {
+        for (; t >= 0; t = templateAlias[t])
+          counts[t]++;
+      } else {
+        c = new int[k + 2];
+        c[0] = t;
+        System.arraycopy(path, 0, c, 1, k + 1);
+        found.add(c);
+      }
+      continue;
+    }
+    if (k + 1 >= MAX_NODES) continue;
+    path[k] = w;
+    onPath[w] = true;
+    if (k > 1) for (int x : g.nbr[last])
+      blocked[x]++;
+    extend(k + 1);
+    if (k > 1) for (int x : g.nbr[last])
+      blocked[x]--;
+    onPath[w] = false;
+  }
+}
+
+}
+
+
+private Adjacency[] adj; // for each dag
+private ArrayList<ArrayList<Future<ArrayList<int[]>>>> results; // for each dag, by chunk
+private long[] counts; // number of polygons by template, once getMotifs has found them
+
+
+MotifFinder(MetaGraph mg) {
+  adj = new Adjacency[mg.dags.size()];
+  for (int i = 0; i < adj.length; i++)
+    adj[i] = new Adjacency(mg.dags.get(i));
+}
+
+
+/**
+ * It submits the search to the given pool, split by chunks of start commits.
+ */
+void submit(ExecutorService pool, int chunks) {
+  int n, step;
+  results = new ArrayList<ArrayList<Future<ArrayList<int[]>>>>(adj.length);
+  for (Adjacency a : adj) {
+    ArrayList<Future<ArrayList<int[]>>> res = new ArrayList<Future<ArrayList<int[]>>>();
+    n = a.size();
+    step = Math.max(64, (n + chunks - 1) / Math.max(1, chunks));
+    for (int s = 0; s < n; s += step)
+      res.add(pool.submit(new Search(a, s, Math.min(n, s + step))));
+    results.add(res);
+  }
+}
+
+
+/**
+ * It waits for the search (which runs right away if it has not been submitted) and turns the
+ * polygons into motifs, one per template (even if it has no occurrence), sorted by name.
+ *
+ * @param name
+ *          The name of the repository (as Features.name).
+ * @param twins
+ *          The lists of parallel metaedges, as {@link Results#makeSimpleGraph} returns them.
+ */
+ArrayList<Motif> getMotifs(String name, HashMap<String, ArrayList<MetaEdge>> twins)
+    throws InterruptedException, ExecutionException {
+  ArrayList<Motif> res = new ArrayList<Motif>();
+  Motif[] motifs = new Motif[templateNames.length];
+  ArrayList<MetaEdge> edges;
+  Iterator<ArrayList<Future<ArrayList<int[]>>>> rIt = results == null ? null : results.iterator();
+  ArrayList<int[]> found;
+  int i, n;
+  counts = new long[templateNames.length];
+  for (i = 0; i < motifs.length; i++)
+    motifs[i] = new Motif(templateNames[i] + GitWorks.safe_sep + name.split(GitWorks.safe_sep)[1],
+        templateSizes[i], templateSizes[i]);
+  for (Adjacency a : adj) {
+    found = new ArrayList<int[]>();
+    if (rIt == null) found = new Search(a, 0, a.size()).call();
+    else for (Future<ArrayList<int[]>> f : rIt.next())
+      found.addAll(f.get());
+    for (int[] c : found) {
+      n = c.length - 1;
+      edges = new ArrayList<MetaEdge>(n);
+      for (i = 1; i <= n; i++)
+        GitWorks.addUnique(edges, a.getEdge(c[i], c[i % n + 1]));
+      for (int t = c[0]; t >= 0; t = templateAlias[t]) {
+        motifs[t].addOccurrence(edges, twins);
+        counts[t]++;
+      }
+    }
+  }
+  results = null;
+  for (Motif m : motifs) {
+    m.occurrences.trimToSize();
+    m.cStats.trimToSize();
+    GitWorks.addUnique(res, m);
+  }
+  return res;
+}
+
+
+/**
+ * It fills the control stats (min mean med max stdev of the number of polygons in the given number
+ * of randomized samples of the metagraph, see {@link NullModel}) and the z-score of the motifs that
+ * getMotifs has returned. The z-score compares the number of polygons found in the metagraph, i.e.
+ * before the occurrences spanning the same layers are merged, with the samples.
+ */
+void controlStats(ArrayList<Motif> motifs, ExecutorService pool, int samples)
+    throws InterruptedException, ExecutionException {
+  DescriptiveStatistics[] stats = new NullModel(adj).sample(pool, samples);
+  DescriptiveStatistics st;
+  String name;
+  int t;
+  for (Motif m : motifs) {
+    name = m.name.split(GitWorks.safe_sep)[0];
+    for (t = 0; t < templateNames.length && !templateNames[t].equals(name); t++);
+    if (t == templateNames.length) continue;
+    st = stats[t];
+    m.cStats.clear();
+    m.cStats.add(st.getMin());
+    m.cStats.add(st.getMean());
+    m.cStats.add(st.getPercentile(50));
+    m.cStats.add(st.getMax());
+    m.cStats.add(st.getStandardDeviation());
+    m.cStats.trimToSize();
+    m.zScore = st.getStandardDeviation() > 0.0 ? (counts[t] - st.getMean())
+        / st.getStandardDeviation() : 0.0;
+  }
+}
+
+
+/**
+ * @return The number of polygons of g matching each template (by template id).
+ */
+static long[] countPolygs(Adjacency g) {
+  long[] res = new long[templateNames.length];
+  new Search(g, 0, g.size()).count(res);
+  return res;
+}
+
+}
@@ -0,0 +1,203 @@
+package gitworks;
+
+
+import gitworks.MotifFinder.Adjacency;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.commons.math3.random.MersenneTwister;
+import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
+
+
+/**
+ * Degree-preserving randomization of the simple graphs of the dags of a metagraph, as the null model
+ * of the motif z-scores. Each sample rewires the links of every dag by random swaps of their heads
+ * ((a, b) and (c, d) become (a, d) and (c, b)), which keep the in- and out-degree of each commit. A
+ * swap is only taken if the new links follow a topological order of the dag (thus the sample is
+ * still a DAG) and are not there yet.<br>
+ * Sample i is drawn from a MersenneTwister seeded with SEED + i, thus an ensemble is the same however
+ * many threads it is computed by.
+ */
+class NullModel {
+
+static final long SEED = 123456789L; // as GitWorks.rand
+static final int SWAPS_PER_LINK = 10;
+
+private int[][] rank; // for each dag, the topological rank of each commit
+private int[][][] out; // for each dag, the heads of the links of each commit
+private int[][] tails; // for each dag, the tail of each link
+
+
+NullModel(Adjacency[] adj) {
+  int n, m, i, k;
+  rank = new int[adj.length][];
+  out = new int[adj.length][][];
+  tails = new int[adj.length][];
+  for (int a = 0; a < adj.length; a++) {
+    n = adj[a].size();
+    rank[a] = topoRanks(adj[a]);
+    out[a] = new int[n][];
+    m = 0;
+    for (int u = 0; u < n; u++) {
+      k = 0;
+      for (boolean f : adj[a].fwd[u])
+        if (f) k++;
+      out[a][u] = new int[k];
+      for (i = 0, k = 0; i < adj[a].nbr[u].length; i++)
+        if (adj[a].fwd[u][i]) out[a][u][k++] = adj[a].nbr[u][i];
+      m += k;
+    }
+    tails[a] = new int[m];
+    for (int u = 0, j = 0; u < n; u++)
+      for (i = 0; i < out[a][u].length; i++)
+        tails[a][j++] = u;
+  }
+}
+
+
+// Kahn's algorithm
+private static int[] topoRanks(Adjacency g) {
+  int n = g.size(), head = 0, tail = 0, u, i;
+  int[] res = new int[n];
+  int[] inDeg = new int[n];
+  int[] queue = new int[n];
+  for (u = 0; u < n; u++)
+    for (i = 0; i < g.nbr[u].length; i++)
+      if (!g.fwd[u][i]) inDeg[u]++;
+  for (u = 0; u < n; u++)
+    if (inDeg[u] == 0) queue[tail++] = u;
+  while (head < tail) {
+    u = queue[head];
+    res[u] = head++;
+    for (i = 0; i < g.nbr[u].length; i++)
+      if (g.fwd[u][i] && --inDeg[g.nbr[u][i]] == 0) queue[tail++] = g.nbr[u][i];
+  }
+  if (tail < n) System.err.println("NullModel : ERROR : the graph has a cycle.");
+  return res;
+}
+
+
+private static int indexOf(int[] a, int v) {
+  for (int i = 0; i < a.length; i++)
+    if (a[i] == v) return i;
+  return -1;
+}
+
+
+/**
+ * @return The a-th dag, with its links rewired by random swaps.
+ */
+Adjacency randomize(int a, MersenneTwister rand) {
+  int n = out[a].length, m = tails[a].length, i, j, u, v, w, x;
+  int[] r = rank[a], heads = new int[m], deg = new int[n];
+  int[][] o = new int[n][];
+  long[] links;
+  for (u = 0, j = 0; u < n; u++) {
+    o[u] = out[a][u].clone();
+    for (i = 0; i < o[u].length; i++)
+      heads[j++] = o[u][i];
+  }
+  for (int s = 0; m > 1 && s < SWAPS_PER_LINK * m; s++) {
+    i = rand.nextInt(m);
+    j = rand.nextInt(m);
+    u = tails[a][i];
+    v = heads[i];
+    w = tails[a][j];
+    x = heads[j];
+    if (u == w || v == x || r[u] >= r[x] || r[w] >= r[v] || indexOf(o[u], x) >= 0
+        || indexOf(o[w], v) >= 0) continue;
+    o[u][indexOf(o[u], v)] = x;
+    o[w][indexOf(o[w], x)] = v;
+    heads[i] = x;
+    heads[j] = v;
+  }
+  for (u = 0; u < n; u++) {
+    deg[u] += o[u].length;
+    for (int h : o[u])
+      deg[h]++;
+  }
+  int[][] nbr = new int[n][];
+  boolean[][] fwd = new boolean[n][];
+  for (u = 0; u < n; u++) {
+    nbr[u] = new int[deg[u]];
+    fwd[u] = new boolean[deg[u]];
+    deg[u] = 0;
+  }
+  for (u = 0; u < n; u++)
+    for (int h : o[u]) {
+      nbr[u][deg[u]] = h;
+      fwd[u][deg[u]++] = true;
+      nbr[h][deg[h]] = u;
+      fwd[h][deg[h]++] = false;
+    }
+  for (u = 0; u < n; u++) { // neighbours in ascending order, as in MotifFinder.Adjacency(Dag)
+    links = new long[deg[u]];
+    for (i = 0; i < deg[u]; i++)
+      links[i] = (long)nbr[u][i] << 1 | (fwd[u][i] ? 1 : 0);
+    Arrays.sort(links);
+    for (i = 0; i < deg[u]; i++) {
+      nbr[u][i] = (int)(links[i] >>> 1);
+      fwd[u][i] = (links[i] & 1) == 1;
+    }
+  }
+  return new Adjacency(nbr, fwd);
+}
+
+
+/**
+ * The number of polygons by template in a randomized sample of all the dags.
+ */
+private class Sample implements Callable<long[]> {
+
+private int index;
+
+
+Sample(int index) {
+  this.index = index;
+}
+
+
+@Override
+public long[] call() {
+  MersenneTwister rand = new MersenneTwister(SEED + index);
+  long[] res = new long[MotifFinder.templateNames.length];
+  long[] c;
+  for (int a = 0; a < out.length; a++) {
+    c = MotifFinder.countPolygs(randomize(a, rand));
+    for (int t = 0; t < res.length; t++)
+      res[t] += c[t];
+  }
+  return res;
+}
+
+}
+
+
+/**
+ * It counts the polygons of the given number of samples on the pool.
+ *
+ * @return For each template, the statistics of its number of polygons across the samples.
+ */
+DescriptiveStatistics[] sample(ExecutorService pool, int samples) throws InterruptedException,
+    ExecutionException {
+  ArrayList<Future<long[]>> res = new ArrayList<Future<long[]>>(samples);
+  DescriptiveStatistics[] stats = new DescriptiveStatistics[MotifFinder.templateNames.length];
+  long[] c;
+  for (int t = 0; t < stats.length; t++)
+    stats[t] = new DescriptiveStatistics(samples);
+  for (int s = 0; s < samples; s++)
+    res.add(pool.submit(new Sample(s)));
+  for (Future<long[]> f : res) {
+    c = f.get();
+    for (int t = 0; t < stats.length; t++)
+      stats[t].addValue(c[t]);
+  }
+  return stats;
+}
+
+}
@@ -0,0 +1,206 @@
+package gitworks;
+
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Iterator;
+
+import org.eclipse.jgit.errors.IncorrectObjectTypeException;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+
+/**
+ * Reachability of the umbrella repo's commits from its branch heads, computed with a single walk.
+ * The commit graph is visited once in topological order (children before parents) and every commit
+ * is labelled with the set of branches (indexes in allBranches) whose head reaches it. Distinct
+ * sets are interned, so each commit costs one int label whatever the number of branches.
+ */
+class Reachability {
+
+static class ReachCommit extends RevCommit {
+
+  private static final long serialVersionUID = 1L;
+
+  int label; // index of the set of branches reaching this commit
+  int order; // position of this commit in the topological order (-1 if not visited yet)
+
+  ReachCommit(AnyObjectId id) {
+    super(id);
+    label = 0;
+    order = -1;
+  }
+
+}
+
+
+static class ReachWalk extends RevWalk {
+
+  ReachWalk(Repository repo) {
+    super(repo);
+  }
+
+  @Override
+  protected RevCommit createCommit(AnyObjectId id) {
+    return new ReachCommit(id);
+  }
+
+}
+
+
+private ArrayList<BitSet> sets; // interned sets of branches ; sets.get(0) is the empty set
+private HashMap<BitSet, Integer> setIndex;
+private HashMap<Long, Integer> unions; // cache of already computed label unions
+private ArrayList<BranchRef> allBranches;
+
+ArrayList<RevCommit> commits; // all commits reachable from some head, in topological order
+int[] labels; // for each commit (ordered as commits), the index of its set of branches
+int[] headOf; // for each branch, the position in commits of its head
+
+
+Reachability(ArrayList<BranchRef> allBranches) {
+  this.allBranches = allBranches;
+  sets = new ArrayList<BitSet>();
+  setIndex = new HashMap<BitSet, Integer>();
+  unions = new HashMap<Long, Integer>();
+  intern(new BitSet(0));
+}
+
+
+private int intern(BitSet s) {
+  Integer i = setIndex.get(s);
+  if (i == null) {
+    i = sets.size();
+    sets.add(s);
+    setIndex.put(s, i);
+  }
+  return i;
+}
+
+
+private int union(int a, int b) {
+  if (a == b || b == 0) return a;
+  if (a == 0) return b;
+  Long key = a < b ? ((long)a << 32) | b : ((long)b << 32) | a;
+  Integer res = unions.get(key);
+  if (res == null) {
+    BitSet u = (BitSet)sets.get(a).clone();
+    u.or(sets.get(b));
+    res = intern(u);
+    unions.put(key, res);
+  }
+  return res;
+}
+
+
+/**
+ * It walks the repo once, from all branch heads, and labels every commit. Upon return, the RevWalk
+ * has been disposed and the RevCommits in {@link #commits} keep their body only if required.
+ *
+ * @param repo
+ * @param getBody
+ *          Whether the raw buffer of the commits must be retained.
+ */
+void compute(Repository repo, boolean getBody) throws MissingObjectException,
+    IncorrectObjectTypeException, IOException {
+  ReachWalk walk = new ReachWalk(repo);
+  ReachCommit c, p;
+  BitSet b;
+  int i;
+  try {
+    walk.sort(RevSort.COMMIT_TIME_DESC, true);
+    walk.sort(RevSort.TOPO, true);
+    walk.setRetainBody(getBody);
+    walk.setRevFilter(null);
+    for (i = 0; i < allBranches.size(); i++) {
+      c = (ReachCommit)walk.parseCommit(allBranches.get(i).id);
+      if (c.label == 0) walk.markStart(c); // only once per distinct head
+      b = new BitSet(allBranches.size());
+      b.set(i);
+      c.label = union(c.label, intern(b));
+    }
+    commits = new ArrayList<RevCommit>(allBranches.size());
+    Iterator<RevCommit> it = walk.iterator();
+    while (it.hasNext()) {
+      c = (ReachCommit)it.next();
+      c.order = commits.size();
+      commits.add(c);
+      for (RevCommit pc : c.getParents()) {
+        p = (ReachCommit)pc;
+        p.label = union(p.label, c.label);
+      }
+    }
+    commits.trimToSize();
+    labels = new int[commits.size()];
+    for (i = 0; i < labels.length; i++)
+      labels[i] = ((ReachCommit)commits.get(i)).label;
+    headOf = new int[allBranches.size()];
+    for (i = 0; i < headOf.length; i++)
+      headOf[i] = ((ReachCommit)walk.lookupCommit(allBranches.get(i).id)).order;
+  }
+  finally {
+    walk.dispose();
+    walk.release();
+    unions.clear();
+  }
+}
+
+
+int size() {
+  return commits.size();
+}
+
+
+/**
+ * @return The set of branches (indexes in allBranches) whose head reaches the i-th commit.
+ */
+BitSet getBranches(int i) {
+  return sets.get(labels[i]);
+}
+
+
+/**
+ * @return The number of distinct sets of branches among all commits.
+ */
+int getNumLabels() {
+  return sets.size();
+}
+
+
+BitSet getLabel(int label) {
+  return sets.get(label);
+}
+
+
+/**
+ * Fork-level view of the labels computed by {@link #compute(Repository, boolean)}: the set of
+ * branches of each label is mapped to the set of remotes (forks) owning at least one of them. The
+ * result is indexed as the labels, thus the fork set of the i-th commit is res[labels[i]].
+ *
+ * @param forkOf
+ *          For each branch (indexes in allBranches), the index of the fork it belongs to.
+ * @param forks
+ *          The number of forks.
+ * @return For each label, the set of forks containing the commits with that label.
+ */
+BitSet[] getForkSets(int[] forkOf, int forks) {
+  BitSet bs, res[] = new BitSet[sets.size()];
+  HashMap<BitSet, BitSet> shared = new HashMap<BitSet, BitSet>();
+  for (int i = 0; i < res.length; i++) {
+    bs = sets.get(i);
+    res[i] = new BitSet(forks);
+    for (int b = bs.nextSetBit(0); b >= 0; b = bs.nextSetBit(b + 1))
+      res[i].set(forkOf[b]);
+    if (shared.containsKey(res[i])) res[i] = shared.get(res[i]);
+    else shared.put(res[i], res[i]);
+  }
+  return res;
+}
+
+}
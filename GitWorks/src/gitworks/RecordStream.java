@@ -0,0 +1,450 @@
+package gitworks;
+
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.NotSerializableException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.OutputStream;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+
+
+/**
+ * Streaming alternative to ObjectOutputStream/ObjectInputStream for the writeExternal/readExternal
+ * methods of GitWorks' classes, which only write primitives, strings and object ids. There is no
+ * handle table: data go through a plain DataOutputStream into a fixed-size buffer, which is written
+ * as a length-prefixed record whenever it fills up, thus memory stays bounded however large the
+ * dump is, and each part (e.g. the commits, or each map) can be written as soon as it is ready.
+ * Object ids are written as their 20 raw bytes; any other object is refused. The reader rebuilds
+ * the same data record by record.<br>
+ * Layout: the magic "GWST", then records (an int length followed by that many bytes), then a 0.
+ */
+class RecordStream {
+
+private static final byte[] MAGIC = {'G', 'W', 'S', 'T'};
+static final int CHUNK = 1 << 16;
+
+
+/**
+ * @return True if in (which must support mark/reset) is a record stream, in which case its magic
+ *         has been skipped; false otherwise, in which case nothing has been read.
+ */
+static boolean isRecordStream(InputStream in) throws IOException {
+  byte[] head = new byte[MAGIC.length];
+  int n = 0, r;
+  in.mark(head.length);
+  while (n < head.length && (r = in.read(head, n, head.length - n)) > 0)
+    n += r;
+  for (int i = 0; i < head.length; i++)
+    if (i >= n || head[i] != MAGIC[i]) {
+      in.reset();
+      return false;
+    }
+  return true;
+}
+
+
+// it cuts the stream into records of CHUNK bytes (but the last one)
+private static class ChunkOutputStream extends OutputStream {
+
+private DataOutputStream out;
+private byte[] buf = new byte[CHUNK];
+private int size = 0;
+
+
+ChunkOutputStream(OutputStream out) {
+  this.out = new DataOutputStream(out);
+}
+
+
+private void writeRecord() throws IOException {
+  if (size == 0) return;
+  out.writeInt(size);
+  out.write(buf, 0, size);
+  size = 0;
+}
+
+
+@Override
+public void write(int b) throws IOException {
+  if (size == CHUNK) writeRecord();
+  buf[size++] = (byte)b;
+}
+
+
+@Override
+public void write(byte[] b, int off, int len) throws IOException {
+  int k;
+  while (len > 0) {
+    if (size == CHUNK) writeRecord();
+    k = Math.min(len, CHUNK - size);
+    System.arraycopy(b, off, buf, size, k);
+    size += k;
+    off += k;
+    len -= k;
+  }
+}
+
+
+@Override
+public void flush() {} // records are cut by size only
+
+
+@Override
+public void close() throws IOException {
+  writeRecord();
+  out.writeInt(0);
+  out.close();
+}
+
+}
+
+
+// it reads the records back as a single stream
+private static class ChunkInputStream extends InputStream {
+
+private DataInputStream in;
+private byte[] buf = new byte[CHUNK];
+private int size = 0;
+private int pos = 0;
+private boolean done = false;
+
+
+ChunkInputStream(InputStream in) {
+  this.in = new DataInputStream(in);
+}
+
+
+private boolean readRecord() throws IOException {
+  if (done) return false;
+  try {
+    size = in.readInt();
+  } catch (EOFException e) {
+    throw new IOException("RecordStream : ERROR : truncated stream.");
+  }
+  if (size == 0) {
+    done = true;
+    return false;
+  }
+  if (size < 0 || size > CHUNK)
+    throw new IOException("RecordStream : ERROR : corrupted record length " + size + ".");
+  in.readFully(buf, 0, size);
+  pos = 0;
+  return true;
+}
+
+
+@Override
+public int read() throws IOException {
+  if (pos == size && !readRecord()) return -1;
+  return buf[pos++] & 0xff;
+}
+
+
+@Override
+public int read(byte[] b, int off, int len) throws IOException {
+  if (len == 0) return 0;
+  if (pos == size && !readRecord()) return -1;
+  len = Math.min(len, size - pos);
+  System.arraycopy(buf, pos, b, off, len);
+  pos += len;
+  return len;
+}
+
+
+@Override
+public int available() {
+  return size - pos;
+}
+
+
+@Override
+public void close() throws IOException {
+  in.close();
+}
+
+}
+
+
+static class Output implements ObjectOutput {
+
+private DataOutputStream data;
+private byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+
+
+/**
+ * It writes the magic to out right away.
+ */
+Output(OutputStream out) throws IOException {
+  out.write(MAGIC);
+  data = new DataOutputStream(new ChunkOutputStream(out));
+}
+
+
+@Override
+public void writeObject(Object obj) throws IOException {
+  if (!(obj instanceof AnyObjectId)) throw new NotSerializableException(obj == null ? "null"
+      : obj.getClass().getName());
+  ((AnyObjectId)obj).copyRawTo(raw, 0);
+  data.write(raw);
+}
+
+
+@Override
+public void write(int b) throws IOException {
+  data.write(b);
+}
+
+
+@Override
+public void write(byte[] b) throws IOException {
+  data.write(b);
+}
+
+
+@Override
+public void write(byte[] b, int off, int len) throws IOException {
+  data.write(b, off, len);
+}
+
+
+@Override
+public void writeBoolean(boolean v) throws IOException {
+  data.writeBoolean(v);
+}
+
+
+@Override
+public void writeByte(int v) throws IOException {
+  data.writeByte(v);
+}
+
+
+@Override
+public void writeShort(int v) throws IOException {
+  data.writeShort(v);
+}
+
+
+@Override
+public void writeChar(int v) throws IOException {
+  data.writeChar(v);
+}
+
+
+@Override
+public void writeInt(int v) throws IOException {
+  data.writeInt(v);
+}
+
+
+@Override
+public void writeLong(long v) throws IOException {
+  data.writeLong(v);
+}
+
+
+@Override
+public void writeFloat(float v) throws IOException {
+  data.writeFloat(v);
+}
+
+
+@Override
+public void writeDouble(double v) throws IOException {
+  data.writeDouble(v);
+}
+
+
+@Override
+public void writeBytes(String s) throws IOException {
+  data.writeBytes(s);
+}
+
+
+@Override
+public void writeChars(String s) throws IOException {
+  data.writeChars(s);
+}
+
+
+@Override
+public void writeUTF(String s) throws IOException {
+  data.writeUTF(s);
+}
+
+
+@Override
+public void flush() {} // writeExternal methods flush after every item: records are cut by size
+
+
+/**
+ * It writes the last record and closes the underlying stream.
+ */
+@Override
+public void close() throws IOException {
+  data.close();
+}
+
+}
+
+
+static class Input implements ObjectInput {
+
+private DataInputStream data;
+private byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+
+
+/**
+ * @param in
+ *          A stream whose magic has been read already (see {@link RecordStream#isRecordStream}).
+ */
+Input(InputStream in) {
+  data = new DataInputStream(new BufferedInputStream(new ChunkInputStream(in), CHUNK));
+}
+
+
+@Override
+public Object readObject() throws IOException {
+  data.readFully(raw);
+  return ObjectId.fromRaw(raw);
+}
+
+
+@Override
+public int read() throws IOException {
+  return data.read();
+}
+
+
+@Override
+public int read(byte[] b) throws IOException {
+  return data.read(b);
+}
+
+
+@Override
+public int read(byte[] b, int off, int len) throws IOException {
+  return data.read(b, off, len);
+}
+
+
+@Override
+public long skip(long n) throws IOException {
+  return data.skip(n);
+}
+
+
+@Override
+public int available() throws IOException {
+  return data.available();
+}
+
+
+@Override
+public void readFully(byte[] b) throws IOException {
+  data.readFully(b);
+}
+
+
+@Override
+public void readFully(byte[] b, int off, int len) throws IOException {
+  data.readFully(b, off, len);
+}
+
+
+@Override
+public int skipBytes(int n) throws IOException {
+  return data.skipBytes(n);
+}
+
+
+@Override
+public boolean readBoolean() throws IOException {
+  return data.readBoolean();
+}
+
+
+@Override
+public byte readByte() throws IOException {
+  return data.readByte();
+}
+
+
+@Override
+public int readUnsignedByte() throws IOException {
+  return data.readUnsignedByte();
+}
+
+
+@Override
+public short readShort() throws IOException {
+  return data.readShort();
+}
+
+
+@Override
+public int readUnsignedShort() throws IOException {
+  return data.readUnsignedShort();
+}
+
+
+@Override
+public char readChar() throws IOException {
+  return data.readChar();
+}
+
+
+@Override
+public int readInt() throws IOException {
+  return data.readInt();
+}
+
+
+@Override
+public long readLong() throws IOException {
+  return data.readLong();
+}
+
+
+@Override
+public float readFloat() throws IOException {
+  return data.readFloat();
+}
+
+
+@Override
+public double readDouble() throws IOException {
+  return data.readDouble();
+}
+
+
+@Override
+@Deprecated
+public String readLine() throws IOException {
+  return data.readLine();
+}
+
+
+@Override
+public String readUTF() throws IOException {
+  return data.readUTF();
+}
+
+
+@Override
+public void close() throws IOException {
+  data.close();
+}
+
+}
+
+}
@@ -21,7 +21,8 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
-import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import jfreechart.XYSeriesChart;
 
@@ -45,47 +46,37 @@ import circos.WriteCommitsToMain;
 public class Results {
 
 private static int countICommits(Features fe) {
-  ArrayList<Integer> coms = new ArrayList<Integer>(fe.commitAuthor.length);
-  int i = 0;
-  for (int r : fe.commitRank) {
-    if (r > CommitRank.NONE.getValue()) GitWorks.addUnique(coms, i);
-    i++;
-  }
-  return coms.size();
+  return fe.commitRank.length - fe.rankCommits[CommitRank.NONE.getValue() + 1].cardinality();
 }
 
 
 private static int countIAuthors(Features fe) {
-  ArrayList<Integer> auths = new ArrayList<Integer>(fe.allAuthors.length);
-  int i = 0;
-  for (int r : fe.commitRank) {
-    if (r > CommitRank.NONE.getValue()) GitWorks.addUnique(auths, fe.commitAuthor[i]);
-    i++;
-  }
-  return auths.size();
+  IntBitmap auths = new IntBitmap();
+  for (CommitRank r : CommitRank.values())
+    if (r != CommitRank.NONE) auths = auths.or(fe.rankAuthors[r.getValue() + 1]);
+  return auths.cardinality();
+}
+
+
+// the ranks counted as r: root and unique go together
+private static IntBitmap[] ranksOf(IntBitmap[] byRank, CommitRank r) {
+  if (r.equals(CommitRank.ROOT) || r.equals(CommitRank.UNIQUE)) // FIXME we do root + unique for the output...
+    return new IntBitmap[] {byRank[CommitRank.ROOT.getValue() + 1],
+      byRank[CommitRank.UNIQUE.getValue() + 1]};
+  return new IntBitmap[] {byRank[r.getValue() + 1]};
 }
 
 
 private static int countICommits(Features fe, CommitRank r) {
   int coms = 0;
-  for (int i : fe.commitRank)
-    if (r.equals(CommitRank.ROOT) && i == CommitRank.UNIQUE.getValue()
-    || r.equals(CommitRank.UNIQUE) && i == CommitRank.ROOT.getValue() // FIXME we do root + unique for the output...
-    || i == r.getValue()) coms++;
+  for (IntBitmap b : ranksOf(fe.rankCommits, r))
+    coms += b.cardinality(); // ranks are disjoint
   return coms;
 }
 
 
 private static int countIAuthors(Features fe, CommitRank r) {
-  ArrayList<Integer> auths = new ArrayList<Integer>(fe.allAuthors.length);
-  int i = 0;
-  for (int ra : fe.commitRank) {
-    if (r.equals(CommitRank.ROOT) && ra == CommitRank.UNIQUE.getValue()
-        || r.equals(CommitRank.UNIQUE) && ra == CommitRank.ROOT.getValue() // FIXME we do root + unique for the output...
-        || ra == r.getValue()) GitWorks.addUnique(auths, fe.commitAuthor[i]);
-    i++;
-  }
-  return auths.size();
+  return IntBitmap.union(ranksOf(fe.rankAuthors, r)).cardinality();
 }
 
 
@@ -96,13 +87,13 @@ private static int countICommits(Features fe, int f) {
     case NONE:
       break;
     case ROOT:
-      if (f == fe.rootIndex) res += fe.iCommitForF[f][r.getValue() + 1].size();
+      if (f == fe.rootIndex) res += fe.iCommitForF[f][r.getValue() + 1].cardinality();
       break;
     case UNIQUE:
-      if (f != fe.rootIndex) res += fe.iCommitForF[f][r.getValue() + 1].size();
+      if (f != fe.rootIndex) res += fe.iCommitForF[f][r.getValue() + 1].cardinality();
       break;
     default:
-      res += fe.iCommitForF[f][r.getValue() + 1].size();
+      res += fe.iCommitForF[f][r.getValue() + 1].cardinality();
     }
   return res;
 }
@@ -115,13 +106,13 @@ private static int countIAuthors(Features fe, int f) {
     case NONE:
       break;
     case ROOT:
-      if (f == fe.rootIndex) res += fe.iAuthorForF[f][r.getValue() + 1].size();
+      if (f == fe.rootIndex) res += fe.iAuthorForF[f][r.getValue() + 1].cardinality();
       break;
     case UNIQUE:
-      if (f != fe.rootIndex) res += fe.iAuthorForF[f][r.getValue() + 1].size();
+      if (f != fe.rootIndex) res += fe.iAuthorForF[f][r.getValue() + 1].cardinality();
       break;
     default:
-      res += fe.iAuthorForF[f][r.getValue() + 1].size();
+      res += fe.iAuthorForF[f][r.getValue() + 1].cardinality();
     }
   return res;
 }
@@ -141,8 +132,6 @@ static void printoutForkStats(ArrayList<Features> fl) {
   int f, totc, tota;
   int[] totc_r = new int[CommitRank.values().length];
   int[] tota_r = new int[CommitRank.values().length];
-  int rankCount;
-  ArrayList<Integer> rankAuthors = new ArrayList<Integer>();
   try {
     for (Features fe : fl) {
       fe.computeExtra();
@@ -166,16 +155,11 @@ static void printoutForkStats(ArrayList<Features> fl) {
           for (CommitRank cr : CommitRank.values()) {
             if (cr.equals(CommitRank.ROOT)) continue;
             if (cr.equals(CommitRank.UNIQUE) && fe.rootIndex == f) cr = CommitRank.ROOT;
-            rankCount = 0;
-            rankAuthors.clear();
-            for (int c : fe.iCommitForF[f][cr.getValue() + 1]) {
-              rankCount++;
-              GitWorks.addUnique(rankAuthors, fe.commitAuthor[c]);
-            }
             vals += "\t" + totc_r[cr.getValue() + 1] + "\t" + tota_r[cr.getValue() + 1] + "\t"
                 + fe.commitRankRatio[cr.getValue() + 1] + "\t"
-                + fe.authorRankRatio[cr.getValue() + 1] + "\t" + rankCount + "\t"
-                + rankAuthors.size();
+                + fe.authorRankRatio[cr.getValue() + 1] + "\t"
+                + fe.iCommitForF[f][cr.getValue() + 1].cardinality() + "\t"
+                + fe.iAuthorForF[f][cr.getValue() + 1].cardinality();
           }
           pout.println(vals);
           f++;
@@ -208,8 +192,8 @@ private static CircosData getIAuthorsInMainline(Features f, int min) {
   Integer val;
   DIdeogram di, main;
   System.err.println("INFO: " + f.toString());
-  for (i = 0; i < f.iCommitForF[f.rootIndex][CommitRank.U_VIP.getValue() + 1].size(); i++) {
-    iCommits[c] = f.iCommitForF[f.rootIndex][CommitRank.U_VIP.getValue() + 1].get(i);
+  for (int ic : f.iCommitForF[f.rootIndex][CommitRank.U_VIP.getValue() + 1].toArray()) {
+    iCommits[c] = ic;
     tstamps[c] = f.commitTimeLine[iCommits[c]];
     iAuthors[c] = f.commitAuthor[iCommits[c]];
     if (aFreq.containsKey(iAuthors[c]))
@@ -218,8 +202,8 @@ private static CircosData getIAuthorsInMainline(Features f, int min) {
       aFreq.put(iAuthors[c], 1);
     c++;
   }
-  for (i = 0; i < f.iCommitForF[f.rootIndex][CommitRank.VIP.getValue() + 1].size(); i++) {
-    iCommits[c] = f.iCommitForF[f.rootIndex][CommitRank.VIP.getValue() + 1].get(i);
+  for (int ic : f.iCommitForF[f.rootIndex][CommitRank.VIP.getValue() + 1].toArray()) {
+    iCommits[c] = ic;
     tstamps[c] = f.commitTimeLine[iCommits[c]];
     iAuthors[c] = f.commitAuthor[iCommits[c]];
     if (aFreq.containsKey(iAuthors[c]))
@@ -228,8 +212,8 @@ private static CircosData getIAuthorsInMainline(Features f, int min) {
       aFreq.put(iAuthors[c], 1);
     c++;
   }
-  for (i = 0; i < f.iCommitForF[f.rootIndex][CommitRank.PERVASIVE.getValue() + 1].size(); i++) {
-    iCommits[c] = f.iCommitForF[f.rootIndex][CommitRank.PERVASIVE.getValue() + 1].get(i);
+  for (int ic : f.iCommitForF[f.rootIndex][CommitRank.PERVASIVE.getValue() + 1].toArray()) {
+    iCommits[c] = ic;
     tstamps[c] = f.commitTimeLine[iCommits[c]];
     iAuthors[c] = f.commitAuthor[iCommits[c]];
     if (aFreq.containsKey(iAuthors[c]))
@@ -267,36 +251,24 @@ private static CircosData getICommitsToMainline(Features f, int min) {
   int[] iCommits = new int[f.allForks.length];
   int[] uCommits = new int[f.allForks.length];
   Long[] tstamps = new Long[f.allForks.length];
-  @SuppressWarnings("unchecked")
-  ArrayList<Integer>[] iAuthors = new ArrayList[f.allForks.length];
-  @SuppressWarnings("unchecked")
-  ArrayList<Integer>[] uAuthors = new ArrayList[f.allForks.length];
+  IntBitmap[] iAuthors = new IntBitmap[f.allForks.length];
   DIdeogram di, main = null;
   int i, cur, sorting[];
   System.err.println("INFO: " + f.toString());
   for (i = 0; i < f.allForks.length; i++) {
     tstamps[i] = f.since[i];
-    iCommits[i] = f.iCommitForF[i][CommitRank.U_VIP.getValue() + 1].size()
-        + f.iCommitForF[i][CommitRank.VIP.getValue() + 1].size()
-        + f.iCommitForF[i][CommitRank.PERVASIVE.getValue() + 1].size();
-    uCommits[i] = i == f.rootIndex ? f.iCommitForF[i][CommitRank.ROOT.getValue() + 1].size()
-        : f.iCommitForF[i][CommitRank.UNIQUE.getValue() + 1].size();
-    iAuthors[i] = new ArrayList<Integer>();
-    uAuthors[i] = new ArrayList<Integer>();
-    if (iCommits[i] <= min) continue;
-    for (Integer inte : f.iCommitForF[i][CommitRank.U_VIP.getValue() + 1])
-      GitWorks.addUnique(iAuthors[i], f.commitAuthor[inte]);
-    for (Integer inte : f.iCommitForF[i][CommitRank.VIP.getValue() + 1])
-      GitWorks.addUnique(iAuthors[i], f.commitAuthor[inte]);
-    for (Integer inte : f.iCommitForF[i][CommitRank.PERVASIVE.getValue() + 1])
-      GitWorks.addUnique(iAuthors[i], f.commitAuthor[inte]);
-    if (i == f.rootIndex) for (Integer inte : f.iCommitForF[i][CommitRank.ROOT.getValue() + 1])
-      GitWorks.addUnique(uAuthors[i], f.commitAuthor[inte]);
-    else for (Integer inte : f.iCommitForF[i][CommitRank.UNIQUE.getValue() + 1])
-      GitWorks.addUnique(uAuthors[i], f.commitAuthor[inte]);
+    iCommits[i] = f.iCommitForF[i][CommitRank.U_VIP.getValue() + 1].cardinality()
+        + f.iCommitForF[i][CommitRank.VIP.getValue() + 1].cardinality()
+        + f.iCommitForF[i][CommitRank.PERVASIVE.getValue() + 1].cardinality();
+    uCommits[i] = i == f.rootIndex ? f.iCommitForF[i][CommitRank.ROOT.getValue() + 1].cardinality()
+        : f.iCommitForF[i][CommitRank.UNIQUE.getValue() + 1].cardinality();
+    if (iCommits[i] <= min) iAuthors[i] = new IntBitmap();
+    else iAuthors[i] = IntBitmap.union(f.iAuthorForF[i][CommitRank.U_VIP.getValue() + 1],
+        f.iAuthorForF[i][CommitRank.VIP.getValue() + 1],
+        f.iAuthorForF[i][CommitRank.PERVASIVE.getValue() + 1]);
   }
   sorting = IndexedSortable.sortedPermutation(tstamps, false);
-  main = new DIdeogram(f.allForks[f.rootIndex], iCommits[f.rootIndex], iAuthors[f.rootIndex].size());
+  main = new DIdeogram(f.allForks[f.rootIndex], iCommits[f.rootIndex], iAuthors[f.rootIndex].cardinality());
   if (iCommits[f.rootIndex] > 0) {
     if (uCommits[f.rootIndex] > 0)
       main.setScatter(uCommits[f.rootIndex]); //((int)((1.0 * uCommits[f.rootIndex])
@@ -312,7 +284,7 @@ private static CircosData getICommitsToMainline(Features f, int min) {
   for (i = 0; i < sorting.length; i++) {
     cur = sorting[i];
     if (iCommits[cur] <= min || cur == f.rootIndex) continue;
-    di = new DIdeogram(f.allForks[cur], iCommits[cur], iAuthors[cur].size());
+    di = new DIdeogram(f.allForks[cur], iCommits[cur], iAuthors[cur].cardinality());
     res.addToSetB(di);
     res.getLinks().add(new DLink(main, di, di.getValue())); // keep the order in res.links
     if (uCommits[cur] > 0)
@@ -327,19 +299,18 @@ private static CircosData getICommitsToMainline(Features f, int min) {
 private static CircosData getRankedCommitToMainline(Features f, CommitRank rank, int min) {
   CircosData res = new CircosData();
   int i, l, d, b;
-  ArrayList<Integer> a = new ArrayList<Integer>();
+  IntBitmap a = new IntBitmap();
   DIdeogram di;
   Iterator<DIdeogram> dIt;
   for (i = 0; i < f.allForks.length; i++) {
     if (f.commitRankRatio[rank.getValue()] * f.acCommitDiffusion.length <= min) continue;
     l = 0;
-    a.clear();
-    for (int cc : f.forkCommit[i])
-      if (f.commitRank[cc] == rank.getValue()) {
-        l++;
-        GitWorks.addUnique(a, f.commitAuthor[cc]);
-      }
-    b = a.size();
+    a = new IntBitmap();
+    for (int cc : f.forkCommit[i].and(f.rankCommits[rank.getValue() + 1]).toArray()) {
+      l++;
+      a.add(f.commitAuthor[cc]);
+    }
+    b = a.cardinality();
     if (i == f.getRootIndex()) res.addToSetA(new DIdeogram(f.allForks[i], l, b));
     else res.addToSetB(new DIdeogram(f.allForks[i], l, b));
   }
@@ -348,10 +319,10 @@ private static CircosData getRankedCommitToMainline(Features f, CommitRank rank,
   while (dIt.hasNext()) {
     di = dIt.next();
     d = Arrays.binarySearch(f.allForks, di.getName());
-    for (int j = 0; j < f.cLinkMap[rank.getValue() + 1][d].length; j++) {
-      a = f.cLinkMap[rank.getValue() + 1][d][j];
-      if (a == null || a.size() == 0) continue;
-      res.addLink(di.getName(), f.allForks[j], a.size());
+    for (int j = 0; j < f.allForks.length; j++) {
+      b = f.cLinkMap.size(rank.getValue() + 1, d, j);
+      if (b == 0) continue;
+      res.addLink(di.getName(), f.allForks[j], b);
     }
   }
   return res;
@@ -521,8 +492,8 @@ static private void computeMotifs(String repoName, Graph<Commit, MetaEdge> g)
 
 // motifs, z-scores and twins
 static void metagraphStats(ArrayList<MetaGraph> mgs, ArrayList<Features> fl) {
-  DirectedSparseGraph<Commit, MetaEdge> g;
   Iterator<Features> fIt = fl.iterator();
+  MotifFinder finder, next;
   Features f;
   HashMap<String, ArrayList<MetaEdge>> twins;
   // HashMap<MetaEdge, MetaEdge[]> parallels;
@@ -542,26 +513,30 @@ static void metagraphStats(ArrayList<MetaGraph> mgs, ArrayList<Features> fl) {
       for (String st : aggregatesNames)
         colHeader[k++] = me + st;
   }
+  ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, GitWorks.workers));
   try {
+    next = mgs.isEmpty() ? null : new MotifFinder(mgs.get(0));
+    if (next != null) next.submit(pool, 4 * GitWorks.workers);
     for (MetaGraph mg : mgs) {
       f = fIt.next();
+      finder = next; // the search of the next metagraph runs while this one is processed
+      next = i + 1 < mgs.size() ? new MotifFinder(mgs.get(i + 1)) : null;
+      if (next != null) next.submit(pool, 4 * GitWorks.workers);
       repoNames[i] = f.name.split(GitWorks.safe_sep)[1];
       nEdges = 0;
       for (Dag d : mg.dags)
         nEdges += d.getNumMetaEdges();
       twins = new HashMap<String, ArrayList<MetaEdge>>(nEdges);
-      g = makeSimpleGraph(mg, twins);
+      makeSimpleGraph(mg, twins);
       // parallels = new HashMap<MetaEdge, MetaEdge[]>(twins.keySet().size());
       // for (ArrayList<MetaEdge> m : twins.values())
       // parallels.put(m.get(0), m.toArray(new MetaEdge[0]));
       par = twins2motif(f.name, twins);
       try {
         // computeMotifs(f.name, g); // XXX
-        exportGraph(f.name, g);
-        Runtime.getRuntime()
-            .exec("java -jar " + GitWorks.pwd + "/GitWorks/lib/gitPatternFinder.jar " + f.name)
-                .waitFor();
-        motifs = importPolygs(f.name, mg, g, twins); // importMotifs(f.name, mg, twins);
+        // exportGraph(f.name, g); // gitPatternFinder.jar, then importPolygs(f.name, mg, g, twins)
+        motifs = finder.getMotifs(f.name, twins); // importMotifs(f.name, mg, twins);
+        if (GitWorks.motifSamples > 0) finder.controlStats(motifs, pool, GitWorks.motifSamples);
         motifs.add(par);
         rMotifs.add(motifs);
         // pTwins.add(parallels);
@@ -594,6 +569,9 @@ static void metagraphStats(ArrayList<MetaGraph> mgs, ArrayList<Features> fl) {
   catch (Exception e1) {
     e1.printStackTrace();
   }
+  finally {
+    pool.shutdownNow();
+  }
 }
 
 
@@ -663,16 +641,19 @@ static double[][] getMotifStats(MetaGraph mg, ArrayList<Motif> motifs, boolean p
   Iterator<Motif> moIt = motifs.iterator();
   DescriptiveStatistics ds[] = new DescriptiveStatistics[M + G];
   DescriptiveStatistics mgLayerStats[] = mg.getLayerStats();
-  DescriptiveStatistics mgAuthorStats[] = getMetaEdgeAuthorStats(mg, motifs);
-  DescriptiveStatistics mgCommitStats[] = getMetaEdgeCommitStats(mg, motifs);
-  DescriptiveStatistics mgModStats[] = getMetaEdgeModStats(mg, motifs);
+  MetaEdgeTable table = new MetaEdgeTable(mg);
+  IntBitmap[] moRows = getMotifRows(table, motifs);
+  DescriptiveStatistics mgAuthorStats[] = getMetaEdgeAuthorStats(table, moRows);
+  DescriptiveStatistics mgCommitStats[] = getMetaEdgeCommitStats(table, moRows);
+  DescriptiveStatistics mgModStats[] = getMetaEdgeModStats(table, moRows);
   for (int i = 0; i < M; i++)
     ds[i] = new DescriptiveStatistics();
   Motif mo;
   int i, j = -1;
   int[] moAuths, moMods;
+  MetaEdge[] moEdges;
   int[] mgSummary = mg.getSummaryStats();
-  int mgAuth = getMetaGraphAuthors(mg);
+  int mgAuth = table.getNumAuthors();
   int allMoEdges;
   String line;
   PrintWriter pout = null;
@@ -736,14 +717,15 @@ static double[][] getMotifStats(MetaGraph mg, ArrayList<Motif> motifs, boolean p
         res[j][9] = allMoEdges;
         for (MotifOccurrence ma : mo.occurrences) {
           if (printout) {
-            moAuths = getMetaEdgeAuthors(Arrays.asList(ma.getAllEdges()));
-            moMods = getMetaEdgeMods(Arrays.asList(ma.getAllEdges()));
+            moEdges = ma.getAllEdges();
+            moAuths = table.getAuthors(moEdges);
+            moMods = table.getMods(moEdges);
             line = "" + res[j][0] + "\t" + ma.mNodes.length + "\t" + ma.mEdges.size() + "\t" // XXX for each res in F
                 + res[j][3] + "\t" + mg.getDiameter() + "\t" + res[j][5] + "\t" + res[j][6] + "\t"
                 + res[j][7] + "\t" + res[j][8] + "\t" + res[j][9] + "\t"
                 + ma.minLayer + "\t" + ma.maxLayer + "\t" + ma.minTimestamp + "\t" + ma.maxTimestamp + "\t" // XXX for each measure in M
                 + ma.totEdges + "\t" + ma.numParallels + "\t" + ma.weight + "\t"
-                + moAuths[0] + "\t" + moAuths[1] + "\t" + moAuths[2] + "\t" + getMetaEdgeCommits(Arrays.asList(ma.getAllEdges()), true) + "\t"
+                + moAuths[0] + "\t" + moAuths[1] + "\t" + moAuths[2] + "\t" + table.getCommits(moEdges, true) + "\t"
                 + moMods[0] + "\t" + moMods[1];
             for (i = 0; i < G; i++)                 // from M for each ds in G
               line += "\t" + ds[M + i].getMean();
@@ -790,118 +772,50 @@ static double[][] getMotifStats(MetaGraph mg, ArrayList<Motif> motifs, boolean p
 
 
 /**
- * @param edges
- * @return The number of distinct authors of commits in the metaedges.
- *         First the authors of internal commits, then the authors of structural commits,
- *         then the authors of structural commits that are also authors of internal commits.
- */
-static int[] getMetaEdgeAuthors(List<MetaEdge> edges) {
-  int com = 0;
-  ArrayList<String> intl = new ArrayList<String>();
-  ArrayList<String> ext = new ArrayList<String>();
-  for (MetaEdge me : edges) {
-    if (me.getWeight() > 0) for (Commit c : me.getInternals())
-      GitWorks.addUnique(intl, c.getAuthoringInfo().getEmailAddress());
-    GitWorks.addUnique(ext, me.first.getAuthoringInfo().getEmailAddress());
-    GitWorks.addUnique(ext, me.last.getAuthoringInfo().getEmailAddress());
-  }
-  for (String a : ext)
-    if (Collections.binarySearch(intl, a) >= 0)
-      com++;
-  return new int[] {intl.size(), ext.size(), com};
-}
-
-
-/**
- * @param list
- * @param allCommits
- *          If true, the result accounts for the first and last node of the metaedges; otherwise,
- *          only internal commits are considered.
- * @return The number of distinct commits in the metaedges.
- */
-static int getMetaEdgeCommits(List<MetaEdge> list, boolean allCommits) {
-  ArrayList<Commit> coms = new ArrayList<Commit>();
-  int weights = 0;
-  for (MetaEdge me : list) {
-    weights += me.getWeight();
-    if (allCommits) {
-      GitWorks.addUnique(coms, me.first);
-      GitWorks.addUnique(coms, me.last);
-    }
-  }
-  return coms.size() + weights;
-}
-
-
-/**
- * @param edges
- * @return The number of mods in the internal commits of the metaedges.
- *         First the sum of line mods, then the sum of file mods.
+ * @return For each motif, the rows of its metaedges in the table.
  */
-static int[] getMetaEdgeMods(List<MetaEdge> edges) {
-  int[] res = new int[] {0, 0};
-  ArrayList<Commit> coms;
-  for (MetaEdge me : edges) {
-    if (me.getWeight() == 0) continue;
-    coms = me.getInternals();
-    for (Commit c : coms) {
-      res[0] += c.mLines;
-      res[1] += c.mFiles;
-    }
+static IntBitmap[] getMotifRows(MetaEdgeTable table, ArrayList<Motif> motifs) {
+  IntBitmap[] res = new IntBitmap[motifs.size()];
+  int m = 0, r;
+  for (Motif mo : motifs) {
+    res[m] = new IntBitmap();
+    for (MetaEdge me : mo.allEdges)
+      if ((r = table.getRow(me.ID)) >= 0) res[m].add(r);
+    m++;
   }
   return res;
 }
 
 
-static int getMetaGraphAuthors(MetaGraph mg) {
-  ArrayList<String> auth = new ArrayList<String>(mg.allCommits.size());
-  for (Commit c : mg.allCommits)
-    GitWorks.addUnique(auth, c.getAuthoringInfo().getEmailAddress());
-  return auth.size();
-}
-
-
 /**
  * Statistics about the number of internal commits per metaedge. The first array is global, the
  * second only about non-motifs, the third only about motif metaedges. Then one array per motifs,
  * according to the second argument.
  *
- * @param mg
- * @param motifs
+ * @param table
+ * @param moRows
+ *          The rows of the metaedges of each motif (see getMotifRows).
  * @return Aggregates of the number of internal commits per metaedge.
  */
-static DescriptiveStatistics[] getMetaEdgeCommitStats(MetaGraph mg, ArrayList<Motif> motifs) {
-  DescriptiveStatistics[] res = new DescriptiveStatistics[3 + motifs.size()];
+static DescriptiveStatistics[] getMetaEdgeCommitStats(MetaEdgeTable table, IntBitmap[] moRows) {
+  DescriptiveStatistics[] res = new DescriptiveStatistics[3 + moRows.length];
   for (int i = 0; i < res.length; i++)
     res[i] = new DescriptiveStatistics();
-  ArrayList<MetaEdge> edges = new ArrayList<MetaEdge>();
-  Iterator<MetaEdge> mIt;
-  MetaEdge me;
-  int m;
   double coms;
   boolean inMotif;
-  for (Dag d : mg.dags) {
-    mIt = d.getMetaEdges();
-    while (mIt.hasNext()) {
-      edges.clear();
-      me = mIt.next();
-      edges.add(me);
-      coms = getMetaEdgeCommits(edges, false);
-      inMotif = false;
-      m = 0;
-      for (Motif mo : motifs) {
-        if (Collections.binarySearch(mo.allEdges, me) >= 0) {
-          inMotif = true;
-          res[3 + m].addValue(coms);
-        }
-        m++;
+  for (int r = 0; r < table.size(); r++) {
+    coms = table.intlCommits[r];
+    inMotif = false;
+    for (int m = 0; m < moRows.length; m++)
+      if (moRows[m].contains(r)) {
+        inMotif = true;
+        res[3 + m].addValue(coms);
       }
-      res[0].addValue(coms);
-      if (inMotif)
-        res[2].addValue(coms);
-      else
-        res[1].addValue(coms);
-    }
+    res[0].addValue(coms);
+    if (inMotif)
+      res[2].addValue(coms);
+    else
+      res[1].addValue(coms);
   }
   return res;
 }
@@ -912,46 +826,36 @@ static DescriptiveStatistics[] getMetaEdgeCommitStats(MetaGraph mg, ArrayList<Mo
  * global, the second only about non-motifs, the third only about motif metaedges. Then one couple
  * per motifs, according to the second argument.
  *
- * @param mg
- * @param motifs
+ * @param table
+ * @param moRows
+ *          The rows of the metaedges of each motif (see getMotifRows).
  * @return Aggregates of the number of mods per metaedge.
  */
-static DescriptiveStatistics[] getMetaEdgeModStats(MetaGraph mg, ArrayList<Motif> motifs) {
-  DescriptiveStatistics[] res = new DescriptiveStatistics[3 * 2 + motifs.size() * 2];
+static DescriptiveStatistics[] getMetaEdgeModStats(MetaEdgeTable table, IntBitmap[] moRows) {
+  DescriptiveStatistics[] res = new DescriptiveStatistics[3 * 2 + moRows.length * 2];
   for (int i = 0; i < res.length; i++)
     res[i] = new DescriptiveStatistics();
-  ArrayList<MetaEdge> edges = new ArrayList<MetaEdge>();
-  Iterator<MetaEdge> mIt;
-  MetaEdge me;
-  int m; int[] mods;
+  int lines, files;
   boolean inMotif;
-  for (Dag d : mg.dags) {
-    mIt = d.getMetaEdges();
-    while (mIt.hasNext()) {
-      edges.clear();
-      me = mIt.next();
-      edges.add(me);
-      mods = getMetaEdgeMods(edges);
-      inMotif = false;
-      m = 0;
-      for (Motif mo : motifs) {
-        if (Collections.binarySearch(mo.allEdges, me) >= 0) {
-          inMotif = true;
-          res[6 + 2 * m].addValue(mods[0]);
-          res[6 + 2 * m + 1].addValue(mods[1]);
-        }
-        m++;
-      }
-      res[0].addValue(mods[0]);
-      res[1].addValue(mods[1]);
-      if (inMotif) {
-        res[4].addValue(mods[0]);
-        res[5].addValue(mods[1]);
-      }
-      else {
-        res[2].addValue(mods[0]);
-        res[3].addValue(mods[1]);
+  for (int r = 0; r < table.size(); r++) {
+    lines = table.lineMods[r];
+    files = table.fileMods[r];
+    inMotif = false;
+    for (int m = 0; m < moRows.length; m++)
+      if (moRows[m].contains(r)) {
+        inMotif = true;
+        res[6 + 2 * m].addValue(lines);
+        res[6 + 2 * m + 1].addValue(files);
       }
+    res[0].addValue(lines);
+    res[1].addValue(files);
+    if (inMotif) {
+      res[4].addValue(lines);
+      res[5].addValue(files);
+    }
+    else {
+      res[2].addValue(lines);
+      res[3].addValue(files);
     }
   }
   return res;
@@ -963,50 +867,41 @@ static DescriptiveStatistics[] getMetaEdgeModStats(MetaGraph mg, ArrayList<Motif
  * global, the second only about non-motifs, the third only about motif metaedges. Then one triplet
  * per motifs, according to the second argument.
  *
- * @param mg
- * @param motifs
+ * @param table
+ * @param moRows
+ *          The rows of the metaedges of each motif (see getMotifRows).
  * @return Aggregates of the number of authors per metaedge.
  */
-static DescriptiveStatistics[] getMetaEdgeAuthorStats(MetaGraph mg, ArrayList<Motif> motifs) {
-  DescriptiveStatistics[] res = new DescriptiveStatistics[3 * 3 + motifs.size() * 3];
+static DescriptiveStatistics[] getMetaEdgeAuthorStats(MetaEdgeTable table, IntBitmap[] moRows) {
+  DescriptiveStatistics[] res = new DescriptiveStatistics[3 * 3 + moRows.length * 3];
   for (int i = 0; i < res.length; i++)
     res[i] = new DescriptiveStatistics();
-  ArrayList<MetaEdge> edges = new ArrayList<MetaEdge>();
-  Iterator<MetaEdge> mIt;
-  MetaEdge me;
-  int m; int[] auth;
+  int[] auth = new int[3];
   boolean inMotif;
-  for (Dag d : mg.dags) {
-    mIt = d.getMetaEdges();
-    while (mIt.hasNext()) {
-      edges.clear();
-      me = mIt.next();
-      edges.add(me);
-      auth = getMetaEdgeAuthors(edges);
-      inMotif = false;
-      m = 0;
-      for (Motif mo : motifs) {
-        if (Collections.binarySearch(mo.allEdges, me) >= 0) {
-          inMotif = true;
-          res[9 + 3 * m].addValue(auth[0]);
-          res[9 + 3 * m + 1].addValue(auth[1]);
-          res[9 + 3 * m + 2].addValue(auth[2]);
-        }
-        m++;
-      }
-      res[0].addValue(auth[0]);
-      res[1].addValue(auth[1]);
-      res[2].addValue(auth[2]);
-      if (inMotif) {
-        res[6].addValue(auth[0]);
-        res[7].addValue(auth[1]);
-        res[8].addValue(auth[2]);
-      }
-      else {
-        res[3].addValue(auth[0]);
-        res[4].addValue(auth[1]);
-        res[5].addValue(auth[2]);
+  for (int r = 0; r < table.size(); r++) {
+    auth[0] = table.intlAuthors[r];
+    auth[1] = table.extAuthors[r];
+    auth[2] = table.bothAuthors[r];
+    inMotif = false;
+    for (int m = 0; m < moRows.length; m++)
+      if (moRows[m].contains(r)) {
+        inMotif = true;
+        res[9 + 3 * m].addValue(auth[0]);
+        res[9 + 3 * m + 1].addValue(auth[1]);
+        res[9 + 3 * m + 2].addValue(auth[2]);
       }
+    res[0].addValue(auth[0]);
+    res[1].addValue(auth[1]);
+    res[2].addValue(auth[2]);
+    if (inMotif) {
+      res[6].addValue(auth[0]);
+      res[7].addValue(auth[1]);
+      res[8].addValue(auth[2]);
+    }
+    else {
+      res[3].addValue(auth[0]);
+      res[4].addValue(auth[1]);
+      res[5].addValue(auth[2]);
     }
   }
   return res;
@@ -1155,6 +1050,7 @@ static void footPrint(ArrayList<MetaGraph> mgs, ArrayList<Features> fl) {
 }
 
 
+@SuppressWarnings("unused")
 private static ArrayList<Motif> importPolygs(String name, MetaGraph mg, Graph<Commit, MetaEdge> g,
     HashMap<String, ArrayList<MetaEdge>> twins) throws IOException {
   ArrayList<Motif> res = new ArrayList<Motif>();
@@ -1177,8 +1073,8 @@ private static ArrayList<Motif> importPolygs(String name, MetaGraph mg, Graph<Co
           GitWorks.addUnique(nodes, (Commit)GitWorks.getElement(mg.allCommits, id));
         }
         for (Commit c : nodes)
-          for (int e : c.edges) {
-            ed = mg.getEdge(e);
+          for (int e = 0; e < c.edges.size(); e++) {
+            ed = mg.getEdge(c.edges.get(e));
             if (Collections.binarySearch(nodes, ed.first) >= 0
                 && Collections.binarySearch(nodes, ed.last) >= 0
                 && g.containsEdge(ed))
@@ -1468,6 +1364,12 @@ static final int medDiff = 10;
 
 static final int ages = 5;
 
+static final long windowStep = 1000L * 3600L * 24L * 7L; // one week
+
+static final String[] windowNames = {"roots", "nodes", "leaves", "metaedges", "branches",
+  "merges", "cool", "commits", "maxInDegree", "maxOutDegree", "medInDegree", "medOutDegree",
+  "maxDegree", "medDegree"};
+
 
 static void computeSubGraphStats(ArrayList<MetaGraph> mgs, ArrayList<Features> fl) {
   MetaGraph mgNext;
@@ -1552,4 +1454,39 @@ static void computeSubGraphStats(ArrayList<MetaGraph> mgs, ArrayList<Features> f
 
 }
 
+
+/**
+ * Evolution curves of the oldest dag of each metagraph, taking one point per windowStep: each
+ * point refers to the commits within the last (width / windowStep) steps. The window slides over
+ * the dag without building any sub-graph (see {@link DagWindow}).
+ */
+static void computeWindowStats(ArrayList<MetaGraph> mgs, ArrayList<Features> fl, long width) {
+  DagWindow w;
+  XYSeriesChart chart;
+  int i, j, n;
+  int[] sStats, dStats;
+  Number[][] counter;
+  Iterator<Features> fIt = fl.iterator();
+  for (MetaGraph mg : mgs) {
+    String name = fIt.next().name;
+    w = new DagWindow(mg.getOldestDag()); // a kept mainline metagraph has just one dag
+    n = (int)((mg.until - mg.since) / windowStep) + 1;
+    counter = new Number[windowNames.length][n];
+    w.moveTo(mg.since - width + windowStep, mg.since + windowStep);
+    for (i = 0; i < n; i++) {
+      sStats = w.getSummaryStats();
+      dStats = w.getDegreeStats();
+      for (j = 0; j < sStats.length; j++)
+        counter[j][i] = sStats[j];
+      for (j = 0; j < dStats.length; j++)
+        counter[sStats.length + j][i] = dStats[j];
+      w.slide(windowStep);
+    }
+    chart = new XYSeriesChart(new String[] {name, "Weeks", "Values"});
+    for (i = 0; i < windowNames.length; i++)
+      chart.addDataset(windowNames[i], null, counter[i]);
+    chart.plotWindow();
+  }
+}
+
 }
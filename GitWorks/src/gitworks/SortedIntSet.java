@@ -0,0 +1,121 @@
+package gitworks;
+
+
+import java.util.Arrays;
+
+
+/**
+ * Sorted set of primitive ints, with the subset of the List API used on {@link Commit#edges}. Most
+ * commits are internal to a single metaedge, thus a set of at most one element is kept inline and
+ * takes no array at all.
+ */
+class SortedIntSet {
+
+private int single; // the only element, while size <= 1
+private int[] elems; // the elements in ascending order, once size > 1
+private int size;
+
+
+SortedIntSet() {
+  size = 0;
+  elems = null;
+}
+
+
+int size() {
+  return size;
+}
+
+
+boolean isEmpty() {
+  return size == 0;
+}
+
+
+int get(int i) {
+  if (i < 0 || i >= size) throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+  return elems == null ? single : elems[i];
+}
+
+
+/**
+ * @return The index of v, or (-(insertion point) - 1) if it is not in the set, as
+ *         {@link java.util.Collections#binarySearch} does.
+ */
+int indexOf(int v) {
+  if (elems != null) return Arrays.binarySearch(elems, 0, size, v);
+  if (size == 0 || v > single) return -size - 1;
+  return v == single ? 0 : -1;
+}
+
+
+boolean contains(int v) {
+  return indexOf(v) >= 0;
+}
+
+
+/**
+ * It adds v, unless it is there already.
+ *
+ * @return The index of v in the set.
+ */
+int add(int v) {
+  int i = indexOf(v);
+  if (i >= 0) return i;
+  i = -i - 1;
+  if (size == 0) {
+    single = v;
+  } else {
+    if (elems == null) {
+      elems = new int[4];
+      elems[0] = single;
+    } else if (size == elems.length) {
+      elems = Arrays.copyOf(elems, size * 2);
+    }
+    System.arraycopy(elems, i, elems, i + 1, size - i);
+    elems[i] = v;
+  }
+  size++;
+  return i;
+}
+
+
+/**
+ * It removes the element at the given index.
+ *
+ * @return The element removed.
+ */
+int remove(int i) {
+  int res = get(i);
+  size--;
+  if (elems != null) {
+    System.arraycopy(elems, i + 1, elems, i, size - i);
+    if (size == 1) {
+      single = elems[0];
+      elems = null;
+    }
+  }
+  return res;
+}
+
+
+void clear() {
+  size = 0;
+  elems = null;
+}
+
+
+void trimToSize() {
+  if (elems != null && elems.length > size) elems = Arrays.copyOf(elems, size);
+}
+
+
+@Override
+public String toString() {
+  StringBuilder res = new StringBuilder("[");
+  for (int i = 0; i < size; i++)
+    res.append(i > 0 ? ", " : "").append(get(i));
+  return res.append(']').toString();
+}
+
+}